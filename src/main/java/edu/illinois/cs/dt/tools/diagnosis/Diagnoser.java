@@ -1,6 +1,7 @@
 package edu.illinois.cs.dt.tools.diagnosis;
 
 import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
 import com.reedoei.testrunner.mavenplugin.TestPlugin;
 import com.reedoei.testrunner.runner.Runner;
 import com.reedoei.testrunner.runner.RunnerFactory$;
@@ -8,9 +9,15 @@ import com.reedoei.testrunner.testobjects.TestLocator;
 import edu.illinois.cs.dt.tools.diagnosis.detection.Detector;
 import edu.illinois.cs.dt.tools.diagnosis.detection.DetectorFactory;
 import edu.illinois.cs.dt.tools.diagnosis.detection.ExecutingDetector;
+import edu.illinois.cs.dt.tools.diagnosis.detection.IncrementalDetector;
+import edu.illinois.cs.dt.tools.diagnosis.instrumentation.Instrumentation;
 import edu.illinois.cs.dt.tools.minimizer.MinimizeTestList;
 import edu.illinois.cs.dt.tools.minimizer.MinimizeTestsResult;
+import edu.illinois.cs.dt.tools.minimizer.MinimizerCheckpoint;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.project.MavenProject;
+import scala.Option;
 
 import java.io.File;
 import java.io.IOException;
@@ -19,13 +26,30 @@ import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 // TODO: Make all files cache inside of a dir like .dtfixingtools
 public class Diagnoser extends TestPlugin {
+    // How many modules of the reactor to detect and minimize at once. 1 processes each module when Maven gets to it.
+    public static final int PARALLEL_MODULES = Configuration.config().getProperty("dt.modules.parallel", 1);
+
+    // Modules already processed together with the rest of the reactor.
+    private static final Set<String> PROCESSED = ConcurrentHashMap.newKeySet();
+
     private MavenProject project;
     private Path javaAgent;
     private Runner runner;
@@ -40,6 +64,20 @@ public class Diagnoser extends TestPlugin {
 
     @Override
     public void execute(final MavenProject project) {
+        if (PROCESSED.contains(key(project))) {
+            System.out.println("[INFO] Already processed " + project.getArtifactId() + " with the rest of the reactor.");
+            return;
+        }
+
+        if (PARALLEL_MODULES > 1) {
+            final List<MavenProject> modules = reactorModules(project);
+
+            if (modules.size() > 1) {
+                executeModules(modules);
+                return;
+            }
+        }
+
         this.project = project;
 
         this.javaAgent = Paths.get(Configuration.config().getProperty("dtfixingtools.javaagent", ""));
@@ -53,36 +91,173 @@ public class Diagnoser extends TestPlugin {
         }
     }
 
+    private static String key(final MavenProject project) {
+        return project.getBasedir().getAbsolutePath();
+    }
+
+    /**
+     * @return The modules of the reactor that this project belongs to, if its root is an ancestor of it.
+     */
+    private static List<MavenProject> reactorModules(final MavenProject project) {
+        MavenProject root = project;
+        while (!root.isExecutionRoot() && root.getParent() != null) {
+            root = root.getParent();
+        }
+
+        if (!root.isExecutionRoot()) {
+            return Collections.singletonList(project);
+        }
+
+        final List<MavenProject> modules = new ArrayList<>();
+        modules.add(root);
+        modules.addAll(root.getCollectedProjects());
+
+        return modules.stream()
+                .filter(module -> !"pom".equals(module.getPackaging()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Detects and minimizes dependent tests in several modules at once, each writing its results under
+     * its own base directory. Tests run in at most dt.workers.total JVMs at a time across all modules.
+     * Diagnosis instruments classes into directories shared by all modules, so it runs one module at a
+     * time, holding {@link Instrumentation#LOCK} so that it does not overlap with modules still detecting.
+     */
+    private void executeModules(final List<MavenProject> modules) {
+        System.out.println("[INFO] Processing " + modules.size() + " modules, " + PARALLEL_MODULES + " at a time.");
+
+        ExecutingDetector.captureOutput(false);
+        final ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_MODULES);
+        final Map<Diagnoser, Future<List<MinimizeTestsResult>>> results = new LinkedHashMap<>();
+
+        try {
+            for (final MavenProject module : modules) {
+                PROCESSED.add(key(module));
+                OutputRoot.set(module, module.getBasedir().toPath());
+
+                final Option<Runner> moduleRunner = RunnerFactory$.MODULE$.from(module);
+                if (moduleRunner.isEmpty()) {
+                    System.out.println("[INFO] Skipping " + module.getArtifactId() + ", which has no tests to run.");
+                    continue;
+                }
+
+                final Diagnoser diagnoser = new Diagnoser();
+                diagnoser.project = module;
+                diagnoser.javaAgent = Paths.get(Configuration.config().getProperty("dtfixingtools.javaagent", ""));
+                diagnoser.runner = moduleRunner.get();
+
+                results.put(diagnoser, executor.submit(() -> {
+                    System.out.println("[INFO] Started " + module.getArtifactId() + ".");
+                    final List<MinimizeTestsResult> minimized = diagnoser.results().collect(Collectors.toList());
+                    System.out.println("[INFO] Finished detection and minimization for " + module.getArtifactId() + ".");
+                    return minimized;
+                }));
+            }
+
+            for (final Map.Entry<Diagnoser, Future<List<MinimizeTestsResult>>> entry : results.entrySet()) {
+                final Diagnoser diagnoser = entry.getKey();
+
+                try {
+                    System.out.println("[INFO] Diagnosing " + diagnoser.project.getArtifactId() + ".");
+                    entry.getValue().get().forEach(result -> diagnose(diagnoser.project, diagnoser.runner, result));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    // One module failing should not stop the others.
+                    System.out.println("[ERROR] Could not process " + diagnoser.project.getArtifactId() + ":");
+                    e.getCause().printStackTrace();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            ExecutingDetector.captureOutput(true);
+        }
+    }
+
     public void diagnose() throws Exception {
-        results().forEach(result -> new TestDiagnoser(project, runner, result).run());
+        results().forEach(result -> diagnose(project, runner, result));
+    }
+
+    /**
+     * Diagnosis instruments the module's classes into sootOutput and runs them, while other modules may
+     * still be detecting (and collecting footprints, which also uses sootOutput), so it holds
+     * {@link Instrumentation#LOCK} from instrumenting until it is done running the instrumented classes.
+     */
+    private static void diagnose(final MavenProject project, final Runner runner, final MinimizeTestsResult result) {
+        synchronized (Instrumentation.LOCK) {
+            new TestDiagnoser(project, runner, result).run();
+        }
     }
 
     private Stream<MinimizeTestsResult> results() throws Exception {
-        if (Files.exists(Paths.get("minimized"))) {
-            return Files.walk(Paths.get("minimized")).flatMap(p -> {
-                try {
-                    return Stream.of(MinimizeTestsResult.fromPath(p));
-                } catch (IOException ignored) {}
+        final Path minimized = OutputRoot.resolve(project, Paths.get("minimized"));
 
-                return Stream.empty();
-            });
+        // With incremental detection, the code may have changed since the results were minimized.
+        if (Files.exists(minimized) && !IncrementalDetector.INCREMENTAL) {
+            return minimized(minimized);
         } else {
-            return detect();
+            return detect(minimized);
         }
     }
 
-    private Stream<MinimizeTestsResult> detect() throws Exception {
-        final Path dtFolder = Files.createDirectories(Paths.get("detection-results"));
+    private static Stream<MinimizeTestsResult> minimized(final Path minimized) throws IOException {
+        return Files.walk(minimized).flatMap(p -> {
+            try {
+                return Stream.of(MinimizeTestsResult.fromPath(p));
+            } catch (IOException ignored) {}
+
+            return Stream.empty();
+        });
+    }
+
+    private Stream<MinimizeTestsResult> detect(final Path minimized) throws Exception {
+        final Path dtFolder = Files.createDirectories(OutputRoot.resolve(project, Detector.DETECTION_RESULTS_PATH));
         final Path dtFile = dtFolder.resolve(ExecutingDetector.DT_LISTS_PATH);
 
-        if (!Files.exists(dtFile)) {
-            final List<String> tests = scala.collection.JavaConverters.bufferAsJavaList(TestLocator.tests(project).toList().toBuffer());
+        final List<String> tests = scala.collection.JavaConverters.bufferAsJavaList(TestLocator.tests(project).toList().toBuffer());
+
+        final Optional<Detector> rerun =
+                IncrementalDetector.INCREMENTAL ? IncrementalDetector.from(project, runner, tests, dtFolder) : Optional.empty();
+
+        if (!Files.exists(dtFile) || rerun.isPresent()) {
+            final Detector detector;
+            if (rerun.isPresent()) {
+                detector = rerun.get();
+                dropMinimized(detector, minimized);
+            } else {
+                detector = DetectorFactory.makeDetector(runner, tests);
+            }
 
-            final Detector detector = DetectorFactory.makeDetector(runner, tests);
             System.out.println("[INFO] Created dependent test detector (" + detector.getClass() + ").");
             detector.writeTo(dtFolder);
+            IncrementalDetector.recordCommit(project, dtFolder);
+        } else if (Files.exists(minimized)) {
+            // Nothing changed since the previous detection, so its minimized results still hold.
+            return minimized(minimized);
         }
 
         return new MinimizeTestList(runner).runDependentTestFile(dtFile);
     }
+
+    /**
+     * Minimized results are loaded instead of minimizing again, so drop those of the tests the detector
+     * detects again (all of them, unless it is incremental), along with their minimizer checkpoints.
+     */
+    private void dropMinimized(final Detector detector, final Path minimized) throws IOException {
+        final Path checkpoints = OutputRoot.resolve(project, MinimizerCheckpoint.CHECKPOINTS_PATH);
+
+        if (!(detector instanceof IncrementalDetector)) {
+            FileUtils.deleteDirectory(minimized.toFile());
+            FileUtils.deleteDirectory(checkpoints.toFile());
+            return;
+        }
+
+        for (final String test : ((IncrementalDetector) detector).affected()) {
+            for (final Result result : Result.values()) {
+                Files.deleteIfExists(MinimizeTestsResult.path(test, result, minimized));
+                Files.deleteIfExists(MinimizerCheckpoint.path(test, result, checkpoints));
+            }
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.reedoei.eunomia.io.files.FileUtil;
+import com.reedoei.testrunner.configuration.Configuration;
+import edu.illinois.cs.dt.tools.runner.data.CompactRunResult;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The state of a detection session, saved after every round so that a killed session can be resumed:
+ * the seed, the original results, the flake rates, and for each completed round which tests were
+ * found to be dependent (before and after filtering).
+ */
+public class DetectionCheckpoint {
+    public static final boolean RESUME = Configuration.config().getProperty("dt.detect.resume", true);
+    public static final Path CHECKPOINT_PATH = Paths.get("checkpoint.json");
+
+    public static Path path(final Path dir) {
+        return dir.resolve(CHECKPOINT_PATH);
+    }
+
+    /**
+     * @return The checkpoint of an unfinished session of the given detector over the given tests, if
+     *         there is one and resuming is enabled.
+     */
+    public static Optional<DetectionCheckpoint> load(final Path dir, final Class<? extends Detector> detector,
+                                                     final List<String> tests) {
+        if (!RESUME || !Files.exists(path(dir))) {
+            return Optional.empty();
+        }
+
+        try {
+            final DetectionCheckpoint checkpoint = new Gson().fromJson(FileUtil.readFile(path(dir)), DetectionCheckpoint.class);
+
+            // Checkpoints written before flake rates were saved cannot be resumed, so start over.
+            if (checkpoint != null && checkpoint.flakeRates != null &&
+                    checkpoint.detector.equals(detector.getName()) && checkpoint.tests.equals(tests)) {
+                checkpoint.dir = dir;
+                return Optional.of(checkpoint);
+            }
+        } catch (IOException | JsonParseException e) {
+            System.out.println("[WARNING] Could not read detection checkpoint " + path(dir) + ": " + e.getMessage());
+        }
+
+        return Optional.empty();
+    }
+
+    public static void delete(final Path dir) throws IOException {
+        Files.deleteIfExists(path(dir));
+    }
+
+    // The detection results directory the checkpoint belongs to.
+    private transient Path dir;
+    private final String detector;
+    private final long seed;
+    private final List<String> tests;
+    private final CompactRunResult origResult;
+    private final FlakeRates flakeRates;
+    private final List<Round> rounds = new ArrayList<>();
+
+    public DetectionCheckpoint(final Path dir, final Class<? extends Detector> detector, final long seed,
+                               final List<String> tests, final CompactRunResult origResult, final FlakeRates flakeRates) {
+        this.dir = dir;
+        this.detector = detector.getName();
+        this.seed = seed;
+        this.tests = tests;
+        this.origResult = origResult;
+        this.flakeRates = flakeRates;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public CompactRunResult origResult() {
+        return origResult;
+    }
+
+    public FlakeRates flakeRates() {
+        return flakeRates;
+    }
+
+    public List<Round> rounds() {
+        return rounds;
+    }
+
+    /**
+     * @return The names of the dependent tests already written by the interrupted session.
+     */
+    public Set<String> found() {
+        final Path dtStream = dir.resolve(Detector.DT_STREAM_PATH);
+
+        try {
+            if (Files.exists(dtStream)) {
+                return DependentTestList.fromJsonLines(dtStream).stream()
+                        .map(DependentTest::name)
+                        .collect(Collectors.toSet());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return new HashSet<>();
+    }
+
+    public void addRound(final int round, final List<DependentTest> candidates, final List<DependentTest> found) {
+        rounds.add(new Round(round,
+                candidates.stream().map(DependentTest::name).collect(Collectors.toList()),
+                found.stream().map(DependentTest::name).collect(Collectors.toList())));
+    }
+
+    /**
+     * Saves by writing a temporary file and moving it, so a crash while saving never leaves a
+     * partially written checkpoint.
+     */
+    public void save() {
+        try {
+            Files.createDirectories(dir);
+
+            final Path temp = path(dir).resolveSibling(CHECKPOINT_PATH + ".tmp");
+            Files.write(temp, new Gson().toJson(this).getBytes());
+            Files.move(temp, path(dir), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static class Round {
+        private final int round;
+        private final List<String> candidates;
+        private final List<String> found;
+
+        public Round(final int round, final List<String> candidates, final List<String> found) {
+            this.round = round;
+            this.candidates = candidates;
+            this.found = found;
+        }
+
+        public int round() {
+            return round;
+        }
+
+        public List<String> candidates() {
+            return candidates;
+        }
+
+        public List<String> found() {
+            return found;
+        }
+    }
+}
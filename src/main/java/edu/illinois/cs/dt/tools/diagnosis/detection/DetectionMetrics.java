@@ -0,0 +1,170 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.google.gson.GsonBuilder;
+import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.RunMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a detection session, rewritten as JSON and in the Prometheus text format after every
+ * round, so that it can be watched while detection runs and compared across modules afterwards.
+ *
+ * Test and JVM counts include every run made for the module since detection started (the original
+ * order, flaky reruns, verification), not just the rounds themselves.
+ */
+public class DetectionMetrics {
+    public static final Path METRICS_PATH = Paths.get("metrics.json");
+    public static final Path PROMETHEUS_PATH = Paths.get("metrics.prom");
+
+    private final transient Path dir;
+    private final transient RunMetrics runMetrics;
+    private final transient long startLaunches;
+    private final transient long startTests;
+    private final transient long startRunMs;
+    private final transient long startTimeMs = System.currentTimeMillis();
+
+    private final String module;
+    private final String detector;
+    private boolean finished = false;
+    private int roundsRun = 0;
+    private int maxRounds = 0;
+    private long testsExecuted = 0;
+    private long jvmLaunches = 0;
+    private double runtimeSeconds = 0;
+    // Summed over all runs, so with several workers this exceeds the runtime.
+    private double testRunSeconds = 0;
+    private int candidates = 0;
+    private int found = 0;
+    private final Map<String, Integer> filterRejections = new LinkedHashMap<>();
+    private final List<RoundMetrics> rounds = new ArrayList<>();
+
+    public DetectionMetrics(final Path dir, final Runner runner, final String detector) {
+        this.dir = dir;
+        this.runMetrics = RunMetrics.of(runner);
+        this.startLaunches = runMetrics.jvmLaunches();
+        this.startTests = runMetrics.testsExecuted();
+        this.startRunMs = runMetrics.runMs();
+        this.module = runner.project().getArtifactId();
+        this.detector = detector;
+    }
+
+    public synchronized void rejected(final String filter, final int count) {
+        filterRejections.merge(filter, count, Integer::sum);
+    }
+
+    /**
+     * @param wallMs How long it took to run the round's order, not counting filtering.
+     */
+    public synchronized void roundFinished(final int round, final long wallMs, final int candidates, final int found,
+                                           final StoppingRule stoppingRule) {
+        this.roundsRun = stoppingRule.roundsRun();
+        this.maxRounds = stoppingRule.maxRounds();
+        this.candidates += candidates;
+        this.found += found;
+        rounds.add(new RoundMetrics(round, wallMs / 1000.0, candidates, found));
+    }
+
+    public synchronized void save(final boolean finished) {
+        this.finished = finished;
+        this.testsExecuted = runMetrics.testsExecuted() - startTests;
+        this.jvmLaunches = runMetrics.jvmLaunches() - startLaunches;
+        this.testRunSeconds = (runMetrics.runMs() - startRunMs) / 1000.0;
+        this.runtimeSeconds = (System.currentTimeMillis() - startTimeMs) / 1000.0;
+
+        try {
+            Files.createDirectories(dir);
+            write(dir.resolve(METRICS_PATH), new GsonBuilder().setPrettyPrinting().create().toJson(this));
+            write(dir.resolve(PROMETHEUS_PATH), prometheus());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Replaces the file in one step, so that whatever scrapes it never sees a partial file.
+    private static void write(final Path path, final String content) throws IOException {
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, content.getBytes());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String prometheus() {
+        final String labels = "module=\"" + escape(module) + "\",detector=\"" + escape(detector) + "\"";
+        final StringBuilder sb = new StringBuilder();
+
+        metric(sb, "dt_detection_finished", "gauge", "Whether detection has finished (1) or is still running (0).",
+                labels, finished ? 1 : 0);
+        metric(sb, "dt_rounds_total", "counter", "Rounds of detection run, including rounds resumed from a checkpoint.",
+                labels, roundsRun);
+        metric(sb, "dt_rounds_max", "gauge", "The maximum number of rounds detection will run.", labels, maxRounds);
+        metric(sb, "dt_tests_executed_total", "counter", "Test results produced by all runs.", labels, testsExecuted);
+        metric(sb, "dt_jvm_launches_total", "counter", "Orders run, each in its own JVM.", labels, jvmLaunches);
+        metric(sb, "dt_runtime_seconds", "gauge", "Wall time since detection started.", labels, runtimeSeconds);
+        metric(sb, "dt_test_run_seconds_total", "counter", "Time spent running orders, summed over all workers.",
+                labels, testRunSeconds);
+        metric(sb, "dt_dependent_test_candidates_total", "counter", "Tests whose result differed in a round, before filtering.",
+                labels, candidates);
+        metric(sb, "dt_dependent_tests_found_total", "counter", "Dependent tests that made it through all of the filters.",
+                labels, found);
+
+        header(sb, "dt_round_duration_seconds", "summary", "Wall time of each round, not counting filtering.");
+        sb.append(String.format("dt_round_duration_seconds_sum{%s} %s\n", labels,
+                format(rounds.stream().mapToDouble(r -> r.wallSeconds).sum())));
+        sb.append(String.format("dt_round_duration_seconds_count{%s} %d\n", labels, rounds.size()));
+
+        if (!rounds.isEmpty()) {
+            final RoundMetrics last = rounds.get(rounds.size() - 1);
+            metric(sb, "dt_last_round_duration_seconds", "gauge", "Wall time of the last round.", labels, last.wallSeconds);
+            metric(sb, "dt_last_round_dependent_tests", "gauge", "Dependent tests found in the last round.", labels, last.found);
+        }
+
+        header(sb, "dt_filter_rejections_total", "counter", "Dependent tests rejected by each filter.");
+        for (final Map.Entry<String, Integer> entry : filterRejections.entrySet()) {
+            sb.append(String.format("dt_filter_rejections_total{%s,filter=\"%s\"} %d\n",
+                    labels, escape(entry.getKey()), entry.getValue()));
+        }
+
+        return sb.toString();
+    }
+
+    private static void header(final StringBuilder sb, final String name, final String type, final String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void metric(final StringBuilder sb, final String name, final String type, final String help,
+                               final String labels, final double value) {
+        header(sb, name, type, help);
+        sb.append(name).append('{').append(labels).append("} ").append(format(value)).append('\n');
+    }
+
+    private static String format(final double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    private static String escape(final String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class RoundMetrics {
+        private final int round;
+        private final double wallSeconds;
+        private final int candidates;
+        private final int found;
+
+        private RoundMetrics(final int round, final double wallSeconds, final int candidates, final int found) {
+            this.round = round;
+            this.wallSeconds = wallSeconds;
+            this.candidates = candidates;
+            this.found = found;
+        }
+    }
+}
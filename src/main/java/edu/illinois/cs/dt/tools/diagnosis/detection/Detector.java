@@ -1,13 +1,60 @@
 package edu.illinois.cs.dt.tools.diagnosis.detection;
 
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestWriter;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.stream.Stream;
 
 public interface Detector {
+    Path DETECTION_RESULTS_PATH = Paths.get("detection-results");
+    Path DT_LISTS_PATH = Paths.get("dt-lists.json");
+    Path DT_STREAM_PATH = Paths.get("dt-lists.jsonl");
+
     Stream<DependentTest> detect();
 
-    void writeTo(Path dtFolder) throws IOException;
+    /**
+     * @return Whether this detector continues an interrupted session, in which case the dependent tests
+     *         that session already wrote are kept.
+     */
+    default boolean resumes() {
+        return false;
+    }
+
+    /**
+     * Writes each dependent test as soon as it is found to the dt stream and list, and once detection
+     * finishes, writes the dt lists. Only once the dt lists exist is the detection complete.
+     */
+    default void writeTo(final Path dir) throws IOException {
+        Files.createDirectories(dir);
+
+        final Path listPath = dir.resolve("list.txt");
+        final Path dtStreamPath = dir.resolve(DT_STREAM_PATH);
+        final Path dtListPath = dir.resolve(DT_LISTS_PATH);
+
+        Files.deleteIfExists(dtListPath);
+        if (!resumes()) {
+            Files.deleteIfExists(listPath);
+            Files.deleteIfExists(dtStreamPath);
+        }
+
+        System.out.println("[INFO] Writing dependent tests to " + dtStreamPath + " as they are found.");
+
+        final int count;
+        try (final DependentTestWriter writer = new DependentTestWriter(dtStreamPath, listPath)) {
+            detect().forEach(writer::write);
+            count = writer.count();
+        }
+        System.out.println(); // End the progress line.
+
+        System.out.print(String.format("[INFO] Found %d new tests, wrote list to %s and dt lists to %s\n", count, listPath, dtListPath));
+
+        DependentTestList.convertJsonLines(dtStreamPath, dtListPath);
+        // The session is complete, so there is nothing left to resume.
+        Files.deleteIfExists(dir.resolve(DetectionCheckpoint.CHECKPOINT_PATH));
+    }
 }
@@ -4,12 +4,28 @@ import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.runner.Runner;
 
 import java.util.List;
+import java.util.Random;
 
 public class DetectorFactory {
 
     public static final int ROUNDS = Configuration.config().getProperty("dt.randomize.rounds", 20);
+    public static final long SEED = Configuration.config().getProperty("dt.seed", new Random().nextInt());
+    public static final String DETECTOR_TYPE = Configuration.config().getProperty("dt.detector", "random");
 
     public static Detector makeDetector(final Runner runner, final List<String> tests) throws Exception {
-        return new RandomDetector(runner, ROUNDS, tests);
+        switch (DETECTOR_TYPE) {
+            case "random":
+                return new RandomDetector(runner, ROUNDS, tests);
+            case "random-class":
+                return new RandomClassDetector(runner, ROUNDS, tests);
+            case "reverse":
+                return new ReverseDetector(runner, ROUNDS, tests);
+            case "two-level":
+                return new TwoLevelDetector(runner, ROUNDS, tests);
+            case "footprint":
+                return new FootprintDetector(runner, ROUNDS, tests);
+            default:
+                throw new IllegalArgumentException("Unknown detector type '" + DETECTOR_TYPE + "' (dt.detector)");
+        }
     }
 }
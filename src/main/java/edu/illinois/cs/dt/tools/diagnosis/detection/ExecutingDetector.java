@@ -4,41 +4,76 @@ import com.google.common.collect.Streams;
 import com.reedoei.eunomia.io.VerbosePrinter;
 import com.reedoei.eunomia.io.capture.CaptureErrStream;
 import com.reedoei.eunomia.io.capture.CaptureOutStream;
-import com.reedoei.eunomia.io.files.FileUtil;
-import com.reedoei.eunomia.string.StringUtil;
-import com.reedoei.testrunner.data.results.Result;
-import com.reedoei.testrunner.data.results.TestResult;
 import com.reedoei.testrunner.data.results.TestRunResult;
 import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.diagnosis.detection.filters.BatchFilter;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
+import edu.illinois.cs.dt.tools.runner.RunnerPool;
+import edu.illinois.cs.dt.tools.runner.data.CompactRunResult;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
-import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+import edu.illinois.cs.dt.tools.runner.data.TestOrder;
 import edu.illinois.cs.dt.tools.runner.data.TestRun;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public abstract class ExecutingDetector implements Detector, VerbosePrinter {
-    public static final Path DT_LISTS_PATH = Paths.get("dt-lists.json");
+    // Capturing output replaces System.out and System.err for the whole JVM, so it is turned off while
+    // several modules are processed concurrently.
+    private static volatile boolean captureOutput = true;
+
+    public static void captureOutput(final boolean capture) {
+        captureOutput = capture;
+    }
+
     protected Runner runner;
+    protected RunnerPool pool;
+    // Whether this detector created the pool, and so shuts it down once detection finishes.
+    private final boolean ownsPool;
 
     private int rounds;
     private List<Predicate<DependentTest>> filters = new ArrayList<>();
+    private List<String> filterNames = new ArrayList<>();
+
+    private DetectionMetrics metrics = null;
+    // How long each round took to run, until the round is recorded in the metrics.
+    private final Map<Integer, Long> roundMs = new ConcurrentHashMap<>();
 
     public ExecutingDetector(final Runner runner, final int rounds) {
-        this.runner = runner;
+        this(new RunnerPool(runner), rounds, true);
+    }
+
+    /**
+     * @param pool A pool shared with the caller (e.g., another detector), which is left running.
+     */
+    public ExecutingDetector(final RunnerPool pool, final int rounds) {
+        this(pool, rounds, false);
+    }
+
+    private ExecutingDetector(final RunnerPool pool, final int rounds, final boolean ownsPool) {
+        this.runner = pool.runner();
+        this.pool = pool;
         this.rounds = rounds;
+        this.ownsPool = ownsPool;
     }
 
-    public abstract List<DependentTest> results() throws Exception;
+    /**
+     * Runs a single round of detection. Rounds may run concurrently, each on its own runner, so
+     * implementations must only use the runner they are given and must derive any randomness from
+     * the round number so that results do not depend on how many workers are used.
+     */
+    public abstract List<DependentTest> results(final Runner runner, final int round) throws Exception;
 
     public static <T> List<T> before(final List<T> ts, final T t) {
         final int i = ts.indexOf(t);
@@ -50,33 +85,146 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
         }
     }
 
+    /**
+     * @return The rule that decides when to stop running rounds. By default, this is configured by
+     *         the dt.detect.* properties, using the detector's rounds as the maximum.
+     */
+    protected StoppingRule stoppingRule(final int rounds) {
+        return StoppingRule.fromConfig(rounds);
+    }
+
+    /**
+     * @return The maximum number of rounds to start at once, starting from the given round. Detectors
+     *         whose orders depend on the results of earlier rounds use this to make sure those rounds
+     *         have finished first.
+     */
+    protected int batchLimit(final int round) {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Called once every dependent test found in a round has been consumed (e.g., written out), in
+     * round order.
+     *
+     * @param candidates The dependent tests found in the round, before filtering.
+     * @param found The dependent tests from the round that made it through all the filters.
+     */
+    protected void roundFinished(final int round, final List<DependentTest> candidates, final List<DependentTest> found) {
+    }
+
+    /**
+     * @return Extra information to show on the progress line after each round.
+     */
+    protected String status() {
+        return "";
+    }
+
+    /**
+     * Writes metrics about the rounds run and the dependent tests found to the directory, updating them
+     * after every round (see {@link DetectionMetrics}).
+     */
+    protected void exportMetrics(final Path dir) {
+        metrics = new DetectionMetrics(dir, runner, getClass().getSimpleName());
+        metrics.save(false);
+    }
+
     protected TestRunResult runSilent(final List<String> tests) {
-        return new CaptureErrStream<>(() -> new CaptureOutStream<>(() -> runner.runList(tests).get()).run().valueRequired()).run().valueRequired();
+        if (!captureOutput) {
+            return ResultCache.of(runner).run(runner, tests);
+        }
+
+        return new CaptureErrStream<>(() -> new CaptureOutStream<>(() -> ResultCache.of(runner).run(runner, tests)).run().valueRequired()).run().valueRequired();
     }
 
-    public List<DependentTest> makeDts(final List<String> intendedOrder, final TestRunResult intended,
-                                       final List<String> revealedOrder, final TestRunResult revealed) {
-        final List<DependentTest> result = new ArrayList<>();
+    /**
+     * Runs a batch of rounds concurrently, capturing output for the whole batch at once (capturing
+     * inside each worker would race on System.out/System.err).
+     */
+    private List<List<DependentTest>> runSilent(final int firstRound, final int count) {
+        if (!captureOutput) {
+            return runRounds(firstRound, count);
+        }
 
-        intended.results().forEach((testName, intendedResult) -> {
-            final Map<String, TestResult> revealedResults = revealed.results();
+        return new CaptureErrStream<>(() -> new CaptureOutStream<>(() -> runRounds(firstRound, count)).run().valueRequired()).run().valueRequired();
+    }
 
-            if (revealedResults.containsKey(testName)) {
-                final Result revealedResult = revealedResults.get(testName).result();
-                if (!revealedResult.equals(intendedResult.result())) {
-                    result.add(new DependentTest(testName,
-                            new TestRun(before(intendedOrder, testName), intendedResult.result()),
-                            new TestRun(before(revealedOrder, testName), revealedResult)));
+    private List<List<DependentTest>> runRounds(final int firstRound, final int count) {
+        final List<Future<List<DependentTest>>> futures = new ArrayList<>();
+
+        for (int round = firstRound; round < firstRound + count; round++) {
+            final int r = round;
+            futures.add(pool.submit(runner -> {
+                try {
+                    final long start = System.currentTimeMillis();
+                    final List<DependentTest> dts = results(runner, r);
+                    roundMs.put(r, System.currentTimeMillis() - start);
+                    return dts;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
                 }
+            }));
+        }
+
+        final List<List<DependentTest>> results = new ArrayList<>();
+        for (final Future<List<DependentTest>> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+
+                throw new RuntimeException(e.getCause());
             }
-        });
+        }
 
-        return result;
+        return results;
+    }
+
+    public List<DependentTest> makeDts(final List<String> intendedOrder, final TestRunResult intended,
+                                       final List<String> revealedOrder, final TestRunResult revealed) {
+        final TestOrder intendedTestOrder = new TestOrder(intendedOrder);
+
+        return makeDts(intendedTestOrder, CompactRunResult.from(intendedTestOrder, intended),
+                new TestOrder(revealedOrder), CompactRunResult.from(intendedTestOrder, revealed));
+    }
+
+    /**
+     * All dependent tests found share the two orders, each referring to the prefix before it, so this
+     * takes linear time and memory no matter how many tests differ. Both results must use the same
+     * dictionary.
+     */
+    public List<DependentTest> makeDts(final TestOrder intendedOrder, final CompactRunResult intended,
+                                       final TestOrder revealedOrder, final CompactRunResult revealed) {
+        return intended.differences(revealed)
+                .mapToObj(id -> {
+                    final String testName = intended.name(id);
+
+                    return new DependentTest(testName,
+                            new TestRun(intendedOrder, intendedOrder.lengthBefore(testName), intended.result(id)),
+                            new TestRun(revealedOrder, revealedOrder.lengthBefore(testName), revealed.result(id)));
+                })
+                .collect(Collectors.toList());
     }
 
     public ExecutingDetector addFilter(final Predicate<DependentTest> predicate) {
+        return addFilter(predicate.getClass().getSimpleName(), predicate);
+    }
+
+    /**
+     * @param name The name to report the filter's rejections under in the metrics.
+     */
+    public ExecutingDetector addFilter(final String name, final Predicate<DependentTest> predicate) {
         filters.add(predicate);
 
+        // Filters can be added more than once (e.g., deduplicating both before and after verifying).
+        final long previous = filterNames.stream().filter(n -> n.equals(name) || n.startsWith(name + "#")).count();
+        filterNames.add(previous == 0 ? name : name + "#" + (previous + 1));
+
         return this;
     }
 
@@ -85,41 +233,79 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
         return Streams.stream(new RunnerIterator());
     }
 
-    private Stream<DependentTest> filter(Stream<DependentTest> dts) {
-        for (final Predicate<DependentTest> filter : filters) {
-            dts = dts.filter(filter);
-        }
-
-        return dts;
-    }
-
+    /**
+     * Also shuts down the pool if this detector created it, even if detection failed.
+     */
     @Override
     public void writeTo(final Path dir) throws IOException {
-        FileUtil.makeDirectoryDestructive(dir);
+        try {
+            Detector.super.writeTo(dir);
+        } finally {
+            shutdownPool();
+        }
+    }
 
-        final Path listPath = dir.resolve("list.txt");
-        final Path dtListPath = dir.resolve(DT_LISTS_PATH);
+    private void shutdownPool() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
 
-        final DependentTestList dtList = new DependentTestList(detect().collect(Collectors.toList()));
-        System.out.println(); // End the progress line.
+    /**
+     * Applies the filters one after the other to the whole round, so that batch filters see all of the
+     * dependent tests that made it through the previous filters at once.
+     */
+    private List<DependentTest> filter(List<DependentTest> dts) {
+        for (int i = 0; i < filters.size(); i++) {
+            final Predicate<DependentTest> filter = filters.get(i);
+            final int before = dts.size();
+
+            if (filter instanceof BatchFilter) {
+                dts = ((BatchFilter) filter).filter(dts);
+            } else {
+                dts = dts.stream().filter(filter).collect(Collectors.toList());
+            }
 
-        print(String.format("[INFO] Found %d tests, writing list to %s and dt lists to %s\n", dtList.size(), listPath, dtListPath));
+            if (metrics != null) {
+                metrics.rejected(filterNames.get(i), before - dts.size());
+            }
+        }
 
-        Files.write(dtListPath, dtList.toString().getBytes());
-        Files.write(listPath, StringUtil.unlines(dtList.names()).getBytes());
+        return dts;
     }
 
     private class RunnerIterator implements Iterator<DependentTest> {
-        private final long origStartTimeMs = System.currentTimeMillis();
-        private long startTimeMs = System.currentTimeMillis();
-
-        private int i = 0;
-
+        private final StoppingRule stoppingRule = stoppingRule(rounds);
+
+        // Total number of rounds started so far. Rounds are numbered consecutively no matter how many
+        // run at once, so the same rounds are generated regardless of the number of workers.
+        // If the stopping rule already knows of some rounds (e.g., from a checkpoint), continue after them.
+        private int round = stoppingRule.roundsRun();
+        private int nextResult = round;
+        // Reports the last round as finished. Deferred until its dependent tests have been consumed.
+        private Runnable finished = null;
+
+        // Results of rounds that finished running, but whose results we have not looked at yet.
+        private final LinkedList<List<DependentTest>> pending = new LinkedList<>();
         private final List<DependentTest> result = new ArrayList<>();
 
         @Override
         public boolean hasNext() {
-            while (i < rounds && result.isEmpty()) {
+            while (result.isEmpty()) {
+                if (finished != null) {
+                    finished.run();
+                    finished = null;
+                }
+
+                if (stoppingRule.shouldStop()) {
+                    if (metrics != null) {
+                        metrics.save(true);
+                    }
+                    // Every round started has finished, so the workers are no longer needed.
+                    shutdownPool();
+                    break;
+                }
+
                 generate();
             }
 
@@ -127,27 +313,39 @@ public abstract class ExecutingDetector implements Detector, VerbosePrinter {
         }
 
         public void generate() {
-            final List<DependentTest> currentRound;
-            try {
-                currentRound = filter(results().stream()).collect(Collectors.toList());
-            } catch (RuntimeException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            if (pending.isEmpty()) {
+                final int count = Math.min(Math.min(pool.size(), stoppingRule.roundsLeft()), batchLimit(round));
+                pending.addAll(runSilent(round, count));
+                round += count;
+            }
+
+            // The filters are applied one round at a time, in round order, so that stateful filters
+            // see exactly the same sequence of dependent tests as they would with a single worker.
+            final List<DependentTest> candidates = pending.removeFirst();
+            final List<DependentTest> currentRound = filter(candidates);
+            stoppingRule.record(candidates, currentRound);
+
+            final int finishedRound = nextResult++;
+            finished = () -> roundFinished(finishedRound, candidates, currentRound);
+
+            if (metrics != null) {
+                final Long ms = roundMs.remove(finishedRound);
+                metrics.roundFinished(finishedRound, ms == null ? 0 : ms, candidates.size(), currentRound.size(), stoppingRule);
+                metrics.save(false);
             }
 
-            final double elapsed = System.currentTimeMillis() - startTimeMs;
-            final double totalElapsed = (System.currentTimeMillis() - origStartTimeMs) / 1000.0;
-            final long estimate = (long) (elapsed / (i + 1) * (rounds - i - 1) / 1000);
+            // Elapsed time is wall time, so with several workers the per-round time (and so the
+            // estimate) already accounts for rounds running concurrently.
+            final String progress = String.format("\r[INFO] Found %d tests in round %d of at most %d (%.1f seconds elapsed, at most %d seconds remaining%s%s)",
+                    currentRound.size(), stoppingRule.roundsRun(), stoppingRule.maxRounds(),
+                    stoppingRule.elapsedMs() / 1000.0, stoppingRule.remainingSeconds(),
+                    stoppingRule.status(), status());
 
             if (!currentRound.isEmpty()) {
-                System.out.print(String.format("\r[INFO] Found %d tests in round %d of %d (%.1f seconds elapsed (%.1f total), %d seconds remaining).\n", currentRound.size(), i + 1, rounds, elapsed / 1000, totalElapsed, estimate));
+                System.out.print(progress + ".\n");
                 result.addAll(currentRound);
-                i = 0;
-                startTimeMs = System.currentTimeMillis();
             } else {
-                System.out.print(String.format("\r[INFO] Found %d tests in round %d of %d (%.1f seconds elapsed (%.1f total), %d seconds remaining)", currentRound.size(), i + 1, rounds, elapsed / 1000, totalElapsed, estimate));
-                i++;
+                System.out.print(progress);
             }
         }
 
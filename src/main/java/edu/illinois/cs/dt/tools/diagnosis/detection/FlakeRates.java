@@ -0,0 +1,129 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.reedoei.eunomia.io.files.FileUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How often each test's result flipped when rerunning the original order, which estimates the
+ * probability that the test is flaky in any given run.
+ *
+ * The uncertainty of each estimate is given by its Wilson score interval (95%), which stays meaningful
+ * for tests that flipped in none or all of the reruns, unlike the normal approximation.
+ */
+public class FlakeRates {
+    public static final Path FLAKE_RATES_PATH = Paths.get("flake-rates.json");
+
+    private static final double Z = 1.96;
+
+    /**
+     * @return The flake rates saved at the path, or no reruns at all if there are none.
+     */
+    public static FlakeRates load(final Path path) {
+        if (Files.exists(path)) {
+            try {
+                final FlakeRates flakeRates = new Gson().fromJson(FileUtil.readFile(path), FlakeRates.class);
+
+                if (flakeRates != null) {
+                    return flakeRates;
+                }
+            } catch (IOException | JsonParseException e) {
+                System.out.println("[WARNING] Could not read flake rates from " + path + ": " + e.getMessage());
+            }
+        }
+
+        return new FlakeRates();
+    }
+
+    private final Map<String, Integer> flips = new HashMap<>();
+    private int rounds = 0;
+
+    /**
+     * @param flipped The tests whose result differed from the original result in one rerun.
+     */
+    public synchronized void record(final Collection<String> flipped) {
+        rounds++;
+        new HashSet<>(flipped).forEach(name -> flips.merge(name, 1, Integer::sum));
+    }
+
+    /**
+     * Saves the number of reruns and how many times each test flipped.
+     */
+    public synchronized void save(final Path path) {
+        try {
+            Files.createDirectories(path.getParent());
+            Files.write(path, new Gson().toJson(this).getBytes());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized int rounds() {
+        return rounds;
+    }
+
+    public synchronized int flips(final String name) {
+        return flips.getOrDefault(name, 0);
+    }
+
+    public synchronized Set<String> flaky() {
+        return new HashSet<>(flips.keySet());
+    }
+
+    /**
+     * @return The fraction of reruns in which the test's result flipped (0 if there were no reruns).
+     */
+    public synchronized double rate(final String name) {
+        return rounds == 0 ? 0.0 : (double) flips.getOrDefault(name, 0) / rounds;
+    }
+
+    private static double[] wilson(final int k, final int n) {
+        if (n == 0) {
+            return new double[] {0.0, 1.0};
+        }
+
+        final double p = (double) k / n;
+        final double z2 = Z * Z;
+        final double denominator = 1 + z2 / n;
+        final double center = (p + z2 / (2 * n)) / denominator;
+        final double halfWidth = Z / denominator * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n));
+
+        return new double[] {Math.max(0.0, center - halfWidth), Math.min(1.0, center + halfWidth)};
+    }
+
+    public synchronized double lower(final String name) {
+        return wilson(flips.getOrDefault(name, 0), rounds)[0];
+    }
+
+    public synchronized double upper(final String name) {
+        return wilson(flips.getOrDefault(name, 0), rounds)[1];
+    }
+
+    /**
+     * @return The width of the widest interval over all tests, including the tests that never flipped.
+     */
+    public synchronized double widestInterval() {
+        double widest = width(0);
+
+        for (final int k : flips.values()) {
+            widest = Math.max(widest, width(k));
+        }
+
+        return widest;
+    }
+
+    private double width(final int k) {
+        final double[] interval = wilson(k, rounds);
+        return interval[1] - interval[0];
+    }
+}
@@ -1,24 +1,75 @@
 package edu.illinois.cs.dt.tools.diagnosis.detection;
 
-import com.reedoei.testrunner.data.results.TestRunResult;
+import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
+import edu.illinois.cs.dt.tools.runner.RunnerPool;
+import edu.illinois.cs.dt.tools.runner.data.CompactRunResult;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.TestOrder;
 
 import java.util.List;
 
 public class FlakyDetector extends ExecutingDetector {
+    public static final double MAX_INTERVAL_WIDTH =
+            Double.parseDouble(Configuration.config().getProperty("dt.flaky.interval.width", "0.3"));
+
     private final List<String> tests;
-    private final TestRunResult origResult;
+    private final TestOrder origOrder;
+    private final CompactRunResult origResult;
+    private final FlakeRates flakeRates = new FlakeRates();
+
+    public FlakyDetector(final Runner runner, final int rounds, final List<String> tests, final CompactRunResult origResult) {
+        this(new RunnerPool(runner), rounds, tests, origResult);
+    }
 
-    public FlakyDetector(final Runner runner, final int rounds, final List<String> tests, final TestRunResult origResult) {
-        super(runner, rounds);
+    /**
+     * @param origResult The results of the original order, using the original order as the dictionary.
+     */
+    public FlakyDetector(final RunnerPool pool, final int rounds, final List<String> tests, final CompactRunResult origResult) {
+        super(pool, rounds);
 
         this.tests = tests;
+        this.origOrder = origResult.dictionary();
         this.origResult = origResult;
     }
 
+    /**
+     * Reruns the original order (concurrently, if there are several workers) and estimates how often
+     * each test flips.
+     */
+    public FlakeRates estimate() {
+        detect().forEach(dt -> {});
+        return flakeRates;
+    }
+
+    @Override
+    protected StoppingRule stoppingRule(final int rounds) {
+        // Rerun the original order at most the given number of times, but stop once the flake rate of
+        // every test is known precisely enough.
+        return new StoppingRule(rounds, false, 0) {
+            @Override
+            public void recordNames(final List<String> candidates, final List<String> accepted) {
+                super.recordNames(candidates, accepted);
+                flakeRates.record(candidates);
+            }
+
+            @Override
+            public boolean shouldStop() {
+                return super.shouldStop() ||
+                        (roundsRun() >= Math.min(MIN_ROUNDS, maxRounds()) &&
+                         flakeRates.widestInterval() < MAX_INTERVAL_WIDTH);
+            }
+
+            @Override
+            public String status() {
+                return String.format(", widest flake rate interval %.2f", flakeRates.widestInterval());
+            }
+        };
+    }
+
     @Override
-    public List<DependentTest> results() throws Exception {
-        return makeDts(tests, origResult, tests, runSilent(tests));
+    public List<DependentTest> results(final Runner runner, final int round) throws Exception {
+        return makeDts(origOrder, origResult, origOrder, CompactRunResult.from(origOrder, ResultCache.of(runner).run(runner, tests)));
     }
 }
@@ -0,0 +1,65 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Runs only the orders that can make a difference according to the static fields each test reads and
+ * writes (see {@link Footprints#targetedOrders()}), instead of shuffling blindly. Collecting the
+ * footprints takes one run of the instrumented test suite, which is kept when resuming.
+ *
+ * Dependencies through state that is not stored in static fields or system properties (e.g., files or
+ * databases) are not found this way.
+ */
+public class FootprintDetector extends RandomDetector {
+    private final List<List<String>> orders;
+    private int generated = 0;
+
+    /**
+     * @param rounds How many times to rerun the original order looking for flaky tests. The number of
+     *               rounds of detection is the number of targeted orders.
+     */
+    public FootprintDetector(final Runner runner, final int rounds, final List<String> tests) throws Exception {
+        this(runner, rounds, tests, footprints(runner, tests).targetedOrders());
+    }
+
+    private FootprintDetector(final Runner runner, final int rounds, final List<String> tests,
+                              final List<List<String>> orders) {
+        super(runner, orders.size(), rounds, tests, DetectorFactory.SEED);
+
+        this.orders = orders;
+    }
+
+    private static Footprints footprints(final Runner runner, final List<String> tests) throws Exception {
+        final Path resultsPath = OutputRoot.resolve(runner, DETECTION_RESULTS_PATH);
+        final Path footprintsPath = resultsPath.resolve(Footprints.FOOTPRINTS_PATH);
+
+        if (DetectionCheckpoint.load(resultsPath, FootprintDetector.class, tests).isPresent()) {
+            final Optional<Footprints> saved = Footprints.load(footprintsPath, tests);
+
+            if (saved.isPresent()) {
+                System.out.println("[INFO] Using footprints from " + footprintsPath);
+                return saved.get();
+            }
+        }
+
+        final Footprints footprints = Footprints.collect(runner, tests);
+        footprints.save(footprintsPath);
+        return footprints;
+    }
+
+    @Override
+    protected StoppingRule newStoppingRule(final int rounds) {
+        return StoppingRule.exhaustive(rounds);
+    }
+
+    @Override
+    protected synchronized List<String> generate(final List<String> tests, final Random random) {
+        return orders.get(generated++);
+    }
+}
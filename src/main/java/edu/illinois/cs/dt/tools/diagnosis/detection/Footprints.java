@@ -0,0 +1,264 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.google.gson.Gson;
+import com.reedoei.eunomia.io.files.FileUtil;
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.diagnosis.instrumentation.Instrumentation;
+import edu.illinois.cs.dt.tools.diagnosis.instrumentation.StaticFieldInfo;
+import edu.illinois.cs.dt.tools.diagnosis.instrumentation.StaticTracer;
+import edu.illinois.cs.dt.tools.diagnosis.instrumentation.TracerMode;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The static fields (and system properties) that each test reads and writes, collected by running the
+ * instrumented test suite once in {@link TracerMode#FOOTPRINT} mode.
+ *
+ * Only assignments count as writes, so a test that changes the object stored in a static field (e.g.,
+ * adds to a static list) only reads the field. Setting dt.footprint.writes to "access" treats every
+ * access as a write instead, which finds those dependencies too, at the cost of many more orders.
+ */
+public class Footprints {
+    public static final Path FOOTPRINTS_PATH = Paths.get("footprints.json");
+
+    // "assign" or "access", see above.
+    public static final String WRITES = Configuration.config().getProperty("dt.footprint.writes", "assign");
+    // Fields accessed by more tests than this (e.g., loggers) are ignored. 0 means no limit.
+    public static final int MAX_ACCESSORS = Configuration.config().getProperty("dt.footprint.max.accessors", 50);
+
+    /**
+     * Instruments the project (if it was not already) and runs the tests once to collect their footprints.
+     * The instrumented classes and their output are shared by all modules, so this holds
+     * {@link Instrumentation#LOCK} while it uses them.
+     */
+    public static Footprints collect(final Runner runner, final List<String> tests) throws Exception {
+        synchronized (Instrumentation.LOCK) {
+            return collectLocked(runner, tests);
+        }
+    }
+
+    private static Footprints collectLocked(final Runner runner, final List<String> tests) throws Exception {
+        FileUtils.deleteDirectory(StaticFieldInfo.STATIC_FIELD_INFO_PATH.toFile());
+        Files.createDirectories(StaticFieldInfo.STATIC_FIELD_INFO_PATH);
+
+        System.out.println("[INFO] Instrumenting to get the static fields each test reads and writes.");
+        Instrumentation.instrumentProject(runner.project());
+
+        final String cp = StaticFieldInfo.instrumentedClasspath(runner.project());
+
+        System.out.println("[INFO] Running instrumented tests (" + tests.size() + " tests).");
+        StaticTracer.inMode(TracerMode.FOOTPRINT, () -> runner.runListWithCp(cp, tests));
+
+        final Footprints footprints = new Footprints(tests);
+        for (final String test : tests) {
+            final Path path = StaticFieldInfo.STATIC_FIELD_INFO_PATH.resolve(test);
+
+            // Tests that do not use JUnit 4 annotations are not instrumented, so have no footprint.
+            if (Files.exists(path)) {
+                final StaticTracer tracer = StaticTracer.from(path);
+                footprints.reads.put(test, new HashSet<>(tracer.reads()));
+                footprints.writes.put(test, new HashSet<>(tracer.writes()));
+            }
+        }
+
+        return footprints;
+    }
+
+    /**
+     * @return The saved footprints, if they were collected for exactly these tests.
+     */
+    public static Optional<Footprints> load(final Path path, final List<String> tests) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        try {
+            final Footprints footprints = new Gson().fromJson(FileUtil.readFile(path), Footprints.class);
+
+            if (footprints != null && tests.equals(footprints.tests)) {
+                return Optional.of(footprints);
+            }
+        } catch (Exception e) {
+            System.out.println("[WARNING] Could not read footprints from " + path + ": " + e.getMessage());
+        }
+
+        return Optional.empty();
+    }
+
+    private final List<String> tests;
+    private final Map<String, Set<String>> reads = new HashMap<>();
+    private final Map<String, Set<String>> writes = new HashMap<>();
+
+    private Footprints(final List<String> tests) {
+        this.tests = new ArrayList<>(tests);
+    }
+
+    public void save(final Path path) {
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.write(path, new Gson().toJson(this).getBytes());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Set<String> writes(final String test) {
+        if ("access".equals(WRITES)) {
+            return reads.getOrDefault(test, Collections.emptySet());
+        }
+
+        return writes.getOrDefault(test, Collections.emptySet());
+    }
+
+    /**
+     * Builds the orders to run, each of which puts some tests right where a shared field can make a
+     * difference to them. There are two kinds of requirements, each only added when the original
+     * order does not already meet it:
+     *
+     * - Pollution: a writer of a field runs before a test that accesses it, with no other writer of
+     *   the field in between.
+     * - Isolation: a test that accesses a field runs before every writer of it (other than itself),
+     *   in case it depends on a writer that runs before it in the original order.
+     *
+     * Each order is built greedily from the requirements that are not met yet, so one order usually
+     * meets many of them. Orders only contain the tests needed to meet their requirements.
+     */
+    public List<List<String>> targetedOrders() {
+        // Sorted by field, so that the orders are the same in every session.
+        final Map<String, List<String>> writers = new TreeMap<>();
+        final Map<String, List<String>> accessors = new TreeMap<>();
+
+        for (final String test : tests) {
+            reads.getOrDefault(test, Collections.emptySet())
+                    .forEach(field -> accessors.computeIfAbsent(field, k -> new ArrayList<>()).add(test));
+            writes(test).forEach(field -> writers.computeIfAbsent(field, k -> new ArrayList<>()).add(test));
+        }
+
+        final Map<String, Set<String>> writerSets = new HashMap<>();
+        final List<Requirement> pending = new ArrayList<>();
+        int ignored = 0;
+
+        for (final Map.Entry<String, List<String>> entry : writers.entrySet()) {
+            final String field = entry.getKey();
+            final List<String> fieldAccessors = accessors.getOrDefault(field, Collections.emptyList());
+
+            if (MAX_ACCESSORS > 0 && fieldAccessors.size() > MAX_ACCESSORS) {
+                ignored++;
+                continue;
+            }
+
+            writerSets.put(field, new HashSet<>(entry.getValue()));
+
+            for (final String accessor : fieldAccessors) {
+                for (final String writer : entry.getValue()) {
+                    if (!writer.equals(accessor)) {
+                        pending.add(new Requirement(field, writer, accessor));
+                    }
+                }
+
+                pending.add(new Requirement(field, null, accessor));
+            }
+        }
+
+        if (ignored > 0) {
+            System.out.println("[INFO] Ignoring " + ignored + " fields accessed by more than " + MAX_ACCESSORS + " tests.");
+        }
+
+        // Drop what the original order already does (and isolation requirements with no other writer).
+        pending.removeIf(requirement -> requirement.metBy(tests, writerSets.get(requirement.field)));
+
+        final List<List<String>> orders = new ArrayList<>();
+        final int requirements = pending.size();
+
+        while (!pending.isEmpty()) {
+            final List<String> order = build(pending, writerSets);
+            pending.removeIf(requirement -> requirement.metBy(order, writerSets.get(requirement.field)));
+            orders.add(order);
+        }
+
+        System.out.println("[INFO] Built " + orders.size() + " targeted orders for " + requirements +
+                " reader/writer pairs over " + writerSets.size() + " fields.");
+
+        return orders;
+    }
+
+    private static List<String> build(final List<Requirement> pending, final Map<String, Set<String>> writerSets) {
+        final Set<String> order = new LinkedHashSet<>();
+
+        for (final Requirement requirement : pending) {
+            if (order.contains(requirement.accessor)) {
+                continue;
+            }
+
+            final Set<String> fieldWriters = writerSets.get(requirement.field);
+
+            if (requirement.writer == null) {
+                if (order.stream().noneMatch(fieldWriters::contains)) {
+                    order.add(requirement.accessor);
+                }
+            } else if (!order.contains(requirement.writer)) {
+                order.add(requirement.writer);
+                order.add(requirement.accessor);
+            } else if (lastWriter(new ArrayList<>(order), fieldWriters).equals(requirement.writer)) {
+                order.add(requirement.accessor);
+            }
+        }
+
+        return new ArrayList<>(order);
+    }
+
+    private static String lastWriter(final List<String> order, final Set<String> fieldWriters) {
+        for (int i = order.size() - 1; i >= 0; i--) {
+            if (fieldWriters.contains(order.get(i))) {
+                return order.get(i);
+            }
+        }
+
+        return "";
+    }
+
+    private static class Requirement {
+        private final String field;
+        // Null for isolation requirements.
+        private final String writer;
+        private final String accessor;
+
+        private Requirement(final String field, final String writer, final String accessor) {
+            this.field = field;
+            this.writer = writer;
+            this.accessor = accessor;
+        }
+
+        private boolean metBy(final List<String> order, final Set<String> fieldWriters) {
+            final int i = order.indexOf(accessor);
+
+            if (i < 0) {
+                return false;
+            }
+
+            final List<String> before = order.subList(0, i);
+
+            if (writer == null) {
+                // With no other writer at all, there is nothing to isolate the test from.
+                return before.stream().noneMatch(fieldWriters::contains);
+            }
+
+            return lastWriter(before, fieldWriters).equals(writer);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.reedoei.eunomia.io.files.FileUtil;
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+import edu.illinois.cs.dt.tools.runner.data.TestRun;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reruns detection only for the tests affected by the commits since the previous detection, and
+ * carries forward the previous results for all other tests.
+ *
+ * Changed source files are mapped to classes using the module's source roots. A test is affected if
+ * its class changed, or if its class is named after a changed main class (e.g., FooTest or TestFoo for
+ * Foo). The whole module is detected again if a change cannot be mapped to tests this way: a main
+ * class with no such test (e.g., a helper used by many tests), any other file in the module (e.g., the
+ * pom or resources), or any file outside of it (e.g., in a module it depends on).
+ *
+ * A previous dependent test is also detected again if any test that ran before it in its intended or
+ * revealed order is affected, since its polluter may have changed. The affected tests are detected in
+ * orders of the whole suite, so that dependencies between affected and unaffected tests are found in
+ * both directions, but only dependent tests that involve an affected test are kept (see
+ * {@link AffectedOrders}).
+ */
+public class IncrementalDetector implements Detector {
+    public static final boolean INCREMENTAL = Configuration.config().getProperty("dt.detect.incremental", false);
+    public static final Path COMMIT_PATH = Paths.get("commit.txt");
+
+    private static Optional<Repository> repository(final MavenProject project) throws IOException {
+        final FileRepositoryBuilder builder = new FileRepositoryBuilder().readEnvironment().findGitDir(project.getBasedir());
+
+        if (builder.getGitDir() == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(builder.build());
+    }
+
+    /**
+     * Records the current commit so that the next incremental detection can diff against it.
+     */
+    public static void recordCommit(final MavenProject project, final Path dtFolder) {
+        try {
+            final Optional<Repository> repository = repository(project);
+
+            if (repository.isPresent()) {
+                try (final Repository repo = repository.get()) {
+                    final ObjectId head = repo.resolve(Constants.HEAD);
+
+                    if (head != null) {
+                        Files.write(dtFolder.resolve(COMMIT_PATH), head.name().getBytes());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The detector to rerun detection with, given the previous detection in dtFolder: empty if
+     *         there is none, or nothing changed since, in which case its results still hold. Otherwise,
+     *         an incremental detector, or the usual detector for all tests (see
+     *         {@link DetectorFactory#makeDetector}) if it is unknown what the previous results were
+     *         detected on or the changes cannot be mapped to tests.
+     */
+    public static Optional<Detector> from(final MavenProject project, final Runner runner,
+                                          final List<String> tests, final Path dtFolder) throws Exception {
+        final Path dtFile = dtFolder.resolve(DT_LISTS_PATH);
+        final Path commitFile = dtFolder.resolve(COMMIT_PATH);
+
+        if (!Files.exists(dtFile)) {
+            return Optional.empty();
+        }
+
+        final Optional<Repository> repository = repository(project);
+        if (!repository.isPresent()) {
+            System.out.println("[WARNING] " + project.getBasedir() + " is not in a git repository, so the previous detection results are used as they are.");
+            return Optional.empty();
+        }
+
+        if (!Files.exists(commitFile)) {
+            System.out.println("[INFO] The previous detection did not record its commit, detecting all tests.");
+            return Optional.of(DetectorFactory.makeDetector(runner, tests));
+        }
+
+        final Set<String> changedPaths;
+        try (final Repository repo = repository.get()) {
+            final ObjectId previous = repo.resolve(FileUtil.readFile(commitFile).trim());
+            final ObjectId head = repo.resolve(Constants.HEAD);
+
+            if (head == null || head.equals(previous)) {
+                return Optional.empty();
+            }
+
+            if (previous == null) {
+                System.out.println("[INFO] The commit of the previous detection is not in the repository, detecting all tests.");
+                return Optional.of(DetectorFactory.makeDetector(runner, tests));
+            }
+
+            changedPaths = changedPaths(repo, previous, head);
+        }
+
+        final Optional<Set<String>> changedTests = affectedTests(project, tests, changedPaths);
+        if (!changedTests.isPresent()) {
+            System.out.println("[INFO] Changes since the previous detection cannot be mapped to tests, detecting all tests.");
+            return Optional.of(DetectorFactory.makeDetector(runner, tests));
+        }
+
+        final Set<String> affected = new HashSet<>(changedTests.get());
+        final List<DependentTest> carried = new ArrayList<>();
+
+        for (final DependentTest dt : DependentTestList.fromFile(dtFile).dts()) {
+            if (affected.contains(dt.name()) || involves(dt, changedTests.get())) {
+                affected.add(dt.name());
+            } else {
+                carried.add(dt);
+            }
+        }
+
+        System.out.println("[INFO] " + changedPaths.size() + " files changed since the previous detection, affecting " +
+                affected.size() + " of " + tests.size() + " tests.");
+
+        return Optional.of(new IncrementalDetector(runner, tests, affected, carried));
+    }
+
+    private static boolean involves(final DependentTest dt, final Set<String> tests) {
+        return dt.intended().order().stream().anyMatch(tests::contains) ||
+                dt.revealed().order().stream().anyMatch(tests::contains);
+    }
+
+    private static Set<String> changedPaths(final Repository repo, final ObjectId previous, final ObjectId head)
+            throws Exception {
+        try (final RevWalk walk = new RevWalk(repo);
+             final ObjectReader reader = repo.newObjectReader();
+             final Git git = new Git(repo)) {
+            final CanonicalTreeParser oldTree = new CanonicalTreeParser();
+            oldTree.reset(reader, walk.parseCommit(previous).getTree());
+            final CanonicalTreeParser newTree = new CanonicalTreeParser();
+            newTree.reset(reader, walk.parseCommit(head).getTree());
+
+            final Set<String> paths = new HashSet<>();
+            for (final DiffEntry entry : git.diff().setOldTree(oldTree).setNewTree(newTree).call()) {
+                Stream.of(entry.getOldPath(), entry.getNewPath())
+                        .filter(p -> !DiffEntry.DEV_NULL.equals(p))
+                        .map(p -> repo.getWorkTree().toPath().resolve(p).toAbsolutePath().normalize().toString())
+                        .forEach(paths::add);
+            }
+
+            return paths;
+        }
+    }
+
+    private static Optional<String> className(final List<String> roots, final String path) {
+        if (!path.endsWith(".java")) {
+            return Optional.empty();
+        }
+
+        for (final String root : roots) {
+            final Path rootPath = Paths.get(root).toAbsolutePath().normalize();
+
+            if (Paths.get(path).startsWith(rootPath)) {
+                final String relative = rootPath.relativize(Paths.get(path)).toString();
+
+                return Optional.of(relative.substring(0, relative.length() - ".java".length())
+                        .replace(File.separatorChar, '.'));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static String simpleName(final String className) {
+        final String outer = className.contains("$") ? className.substring(0, className.indexOf('$')) : className;
+        return outer.substring(outer.lastIndexOf('.') + 1);
+    }
+
+    private static Optional<Set<String>> affectedTests(final MavenProject project, final List<String> tests,
+                                                       final Set<String> changedPaths) {
+        final Path basedir = project.getBasedir().toPath().toAbsolutePath().normalize();
+
+        final List<String> roots = new ArrayList<>(project.getCompileSourceRoots());
+        final List<String> testRoots = new ArrayList<>(project.getTestCompileSourceRoots());
+
+        final Set<String> changedTestClasses = new HashSet<>();
+        final Set<String> changedClassNames = new HashSet<>();
+
+        for (final String path : changedPaths) {
+            // Other modules (e.g., ones this module depends on) can change how this module's tests behave.
+            if (!Paths.get(path).startsWith(basedir)) {
+                System.out.println("[INFO] " + path + " is outside of this module.");
+                return Optional.empty();
+            }
+
+            final Optional<String> testClass = className(testRoots, path);
+            final Optional<String> mainClass = className(roots, path);
+
+            if (testClass.isPresent()) {
+                changedTestClasses.add(testClass.get());
+            } else if (mainClass.isPresent()) {
+                changedClassNames.add(simpleName(mainClass.get()));
+            } else {
+                return Optional.empty();
+            }
+        }
+
+        final Set<String> affected = new HashSet<>();
+        final Set<String> testedClassNames = new HashSet<>();
+
+        for (final String test : tests) {
+            final String testClass = RandomClassDetector.className(test);
+            final String outerClass = testClass.contains("$") ? testClass.substring(0, testClass.indexOf('$')) : testClass;
+            final Optional<String> tested = changedClassNames.stream().filter(name -> testsClass(simpleName(testClass), name)).findFirst();
+
+            if (tested.isPresent()) {
+                testedClassNames.add(tested.get());
+            }
+
+            if (changedTestClasses.contains(outerClass) || tested.isPresent()) {
+                affected.add(test);
+            }
+        }
+
+        for (final String name : changedClassNames) {
+            if (!testedClassNames.contains(name)) {
+                System.out.println("[INFO] No test is named after the changed class " + name + ".");
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(affected);
+    }
+
+    /**
+     * @return Whether the test class is named after the class by one of the usual conventions.
+     */
+    private static boolean testsClass(final String testClassName, final String className) {
+        return testClassName.equals(className + "Test") || testClassName.equals(className + "Tests") ||
+                testClassName.equals(className + "TestCase") || testClassName.equals(className + "IT") ||
+                testClassName.equals("Test" + className);
+    }
+
+    private final Runner runner;
+    private final List<String> tests;
+    private final Set<String> affected;
+    private final List<DependentTest> carried;
+
+    private IncrementalDetector(final Runner runner, final List<String> tests, final Set<String> affected,
+                                final List<DependentTest> carried) {
+        this.runner = runner;
+        this.tests = tests;
+        this.affected = affected;
+        this.carried = carried;
+    }
+
+    /**
+     * @return The tests detected again, whose previous results (e.g., minimized dependencies) are stale.
+     */
+    public Set<String> affected() {
+        return Collections.unmodifiableSet(affected);
+    }
+
+    @Override
+    public Stream<DependentTest> detect() {
+        System.out.println("[INFO] Carrying forward " + carried.size() + " dependent tests from the previous detection.");
+
+        if (affected.isEmpty()) {
+            return carried.stream();
+        }
+
+        try {
+            // Incremental sessions are cheap, so they always start from scratch.
+            DetectionCheckpoint.delete(OutputRoot.resolve(runner, DETECTION_RESULTS_PATH));
+
+            final Detector detector = new AffectedOrders(runner, tests, affected);
+            System.out.println("[INFO] Created dependent test detector (" + detector.getClass() + ") for affected tests.");
+
+            return Stream.concat(carried.stream(), detector.detect());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Orders of the whole suite, with the affected tests and the other tests each shuffled, and the
+     * affected tests running after the others in even rounds and before them in odd rounds. So within
+     * two rounds, each affected test runs after and before every unaffected test. Only dependent tests
+     * that are affected, or whose result changed along with which affected tests ran before them, are
+     * kept: the others only depend on unaffected tests, so their previous results still hold.
+     */
+    private static class AffectedOrders extends RandomDetector {
+        private final Set<String> affected;
+        private int generated = 0;
+
+        private AffectedOrders(final Runner runner, final List<String> tests, final Set<String> affected) {
+            super(runner, DetectorFactory.ROUNDS, tests);
+            this.affected = affected;
+        }
+
+        @Override
+        protected synchronized List<String> generate(final List<String> tests, final Random random) {
+            final List<String> affectedTests = tests.stream().filter(affected::contains).collect(Collectors.toList());
+            final List<String> others = tests.stream().filter(t -> !affected.contains(t)).collect(Collectors.toList());
+            Collections.shuffle(affectedTests, random);
+            Collections.shuffle(others, random);
+
+            final List<String> order = new ArrayList<>();
+            if (generated++ % 2 == 0) {
+                order.addAll(others);
+                order.addAll(affectedTests);
+            } else {
+                order.addAll(affectedTests);
+                order.addAll(others);
+            }
+
+            return order;
+        }
+
+        @Override
+        protected boolean inScope(final DependentTest dt) {
+            return affected.contains(dt.name()) || !affectedBefore(dt.intended()).equals(affectedBefore(dt.revealed()));
+        }
+
+        private Set<String> affectedBefore(final TestRun run) {
+            return run.order().stream().filter(affected::contains).collect(Collectors.toSet());
+        }
+    }
+}
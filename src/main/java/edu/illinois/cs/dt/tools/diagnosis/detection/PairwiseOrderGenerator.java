@@ -0,0 +1,148 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates orders that cover as many not-yet-covered pairs of consecutive tests as possible.
+ * A pair (a, b) is covered once some order has run b immediately after a.
+ *
+ * There are n * (n - 1) such pairs and each order covers at most n - 1 of them, so full coverage
+ * takes at least n orders. Building each order greedily gets close to that, whereas random
+ * shuffles mostly repeat pairs that were already covered once the coverage gets high.
+ */
+public class PairwiseOrderGenerator {
+    // The largest n such that n * n still fits in the (int-indexed) bitset.
+    private static final int MAX_TESTS = 46340;
+
+    private final List<String> tests;
+    private final Map<String, Integer> indices = new HashMap<>();
+    // Bit (a * n + b) is set once b has run immediately after a.
+    private final BitSet covered;
+    private long coveredCount = 0;
+
+    public PairwiseOrderGenerator(final List<String> tests) {
+        Preconditions.checkArgument(tests.size() <= MAX_TESTS,
+                "Cannot track pair coverage for more than " + MAX_TESTS + " tests (got " + tests.size() + ")");
+
+        this.tests = tests;
+
+        for (int i = 0; i < tests.size(); i++) {
+            indices.put(tests.get(i), i);
+        }
+
+        this.covered = new BitSet(tests.size() * tests.size());
+    }
+
+    private int n() {
+        return tests.size();
+    }
+
+    public long totalPairs() {
+        return (long) n() * (n() - 1);
+    }
+
+    public long coveredPairs() {
+        return coveredCount;
+    }
+
+    public double coverage() {
+        if (totalPairs() == 0) {
+            return 100.0;
+        }
+
+        return 100.0 * coveredPairs() / totalPairs();
+    }
+
+    private boolean isCovered(final int a, final int b) {
+        return covered.get(a * n() + b);
+    }
+
+    private void cover(final int a, final int b) {
+        if (!isCovered(a, b)) {
+            covered.set(a * n() + b);
+            coveredCount++;
+        }
+    }
+
+    /**
+     * Marks all consecutive pairs of an order that was run some other way (e.g., the original order).
+     */
+    public void cover(final List<String> order) {
+        for (int i = 1; i < order.size(); i++) {
+            final Integer a = indices.get(order.get(i - 1));
+            final Integer b = indices.get(order.get(i));
+
+            if (a != null && b != null) {
+                cover(a, b);
+            }
+        }
+    }
+
+    /**
+     * Builds the next order and marks its pairs as covered.
+     * Ties are broken using the random, so the orders only depend on the randoms given and the orders
+     * generated before.
+     */
+    public List<String> next(final Random random) {
+        final List<String> order = new ArrayList<>(n());
+
+        if (n() == 0) {
+            return order;
+        }
+
+        final BitSet unused = new BitSet(n());
+        unused.set(0, n());
+
+        int current = random.nextInt(n());
+        unused.clear(current);
+        order.add(tests.get(current));
+
+        while (!unused.isEmpty()) {
+            final int next = nextTest(current, unused, random.nextInt(n()));
+
+            cover(current, next);
+            unused.clear(next);
+            order.add(tests.get(next));
+            current = next;
+        }
+
+        return order;
+    }
+
+    /**
+     * Finds an unused test that has not been run right after the current one, starting from the given
+     * position and wrapping around. If there is no such test, picks the first unused test found.
+     */
+    private int nextTest(final int current, final BitSet unused, final int start) {
+        int fallback = -1;
+
+        for (int i = unused.nextSetBit(start); i >= 0; i = unused.nextSetBit(i + 1)) {
+            if (!isCovered(current, i)) {
+                return i;
+            }
+
+            if (fallback < 0) {
+                fallback = i;
+            }
+        }
+
+        for (int i = unused.nextSetBit(0); i >= 0 && i < start; i = unused.nextSetBit(i + 1)) {
+            if (!isCovered(current, i)) {
+                return i;
+            }
+
+            if (fallback < 0) {
+                fallback = i;
+            }
+        }
+
+        return fallback;
+    }
+}
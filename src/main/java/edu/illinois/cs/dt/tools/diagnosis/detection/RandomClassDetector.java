@@ -0,0 +1,59 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.reedoei.testrunner.runner.Runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Shuffles the order of the test classes, and then the order of the test methods within each class,
+ * but always runs all the methods of a class together (like JUnit does).
+ */
+public class RandomClassDetector extends RandomDetector {
+    /**
+     * @return The name of the class that the test method belongs to, e.g., "a.b.C" for "a.b.C.test[1.5]".
+     */
+    public static String className(final String testName) {
+        final int paramStart = testName.indexOf('[');
+        final String name = paramStart >= 0 ? testName.substring(0, paramStart) : testName;
+        final int i = name.lastIndexOf('.');
+
+        return i >= 0 ? name.substring(0, i) : name;
+    }
+
+    /**
+     * @return The tests grouped by class, with the classes in the order they first appear.
+     */
+    public static Map<String, List<String>> byClass(final List<String> tests) {
+        final Map<String, List<String>> classes = new LinkedHashMap<>();
+
+        for (final String test : tests) {
+            classes.computeIfAbsent(className(test), k -> new ArrayList<>()).add(test);
+        }
+
+        return classes;
+    }
+
+    public RandomClassDetector(final Runner runner, final int rounds, final List<String> tests) {
+        super(runner, rounds, tests, DetectorFactory.SEED);
+    }
+
+    @Override
+    protected List<String> generate(final List<String> tests, final Random random) {
+        final List<List<String>> classes = new ArrayList<>(byClass(tests).values());
+        Collections.shuffle(classes, random);
+
+        final List<String> order = new ArrayList<>(tests.size());
+        for (final List<String> methods : classes) {
+            final List<String> shuffled = new ArrayList<>(methods);
+            Collections.shuffle(shuffled, random);
+            order.addAll(shuffled);
+        }
+
+        return order;
+    }
+}
@@ -1,34 +1,98 @@
 package edu.illinois.cs.dt.tools.diagnosis.detection;
 
-import com.reedoei.eunomia.collections.RandomList;
-import com.reedoei.eunomia.collections.StreamUtil;
-import com.reedoei.eunomia.io.capture.CaptureOutStream;
-import com.reedoei.eunomia.io.capture.CapturedOutput;
-import com.reedoei.testrunner.data.results.TestRunResult;
+import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.runner.Runner;
 import com.reedoei.testrunner.runner.SmartRunner;
 import edu.illinois.cs.dt.tools.diagnosis.detection.filters.FlakyFilter;
 import edu.illinois.cs.dt.tools.diagnosis.detection.filters.UniqueFilter;
 import edu.illinois.cs.dt.tools.diagnosis.detection.filters.VerifyFilter;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
+import edu.illinois.cs.dt.tools.runner.data.CompactRunResult;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.TestOrder;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 
 public class RandomDetector extends ExecutingDetector {
+    private static final boolean PAIRWISE = Configuration.config().getProperty("dt.randomize.pairwise", false);
+
     private final List<String> tests;
-    private final TestRunResult origResult;
+    // Shared by the intended runs of every dependent test found.
+    private final TestOrder origOrder;
+    private final long seed;
+    private final CompactRunResult origResult;
+    private final DetectionCheckpoint checkpoint;
+    private final boolean resumed;
+
+    private final PairwiseOrderGenerator pairwise;
+    // Orders generated for rounds that have not started running yet.
+    private final Map<Integer, List<String>> orders = new HashMap<>();
+    private int nextRound = 0;
 
     public RandomDetector(final Runner runner, final int rounds, final List<String> tests) {
+        this(runner, rounds, tests, DetectorFactory.SEED);
+    }
+
+    public RandomDetector(final Runner runner, final int rounds, final List<String> tests, final long seed) {
+        this(runner, rounds, rounds, tests, seed);
+    }
+
+    /**
+     * @param rounds How many rounds to run looking for dependent tests.
+     * @param flakyRounds How many times to rerun the original order looking for flaky tests.
+     */
+    protected RandomDetector(final Runner runner, final int rounds, final int flakyRounds,
+                             final List<String> tests, final long seed) {
         super(runner, rounds);
 
+        final Path resultsPath = OutputRoot.resolve(runner, DETECTION_RESULTS_PATH);
+        exportMetrics(resultsPath);
+
         this.tests = tests;
+        this.origOrder = new TestOrder(tests);
+        this.pairwise = PAIRWISE ? new PairwiseOrderGenerator(tests) : null;
 
-        System.out.println("[INFO] Getting original results (" + tests.size() + " tests).");
-        this.origResult = runSilent(tests);
+        final Optional<DetectionCheckpoint> previous = DetectionCheckpoint.load(resultsPath, getClass(), tests);
+        this.resumed = previous.isPresent();
 
-        System.out.println("[INFO] Detecting flaky tests.");
-        StreamUtil.seq(new FlakyDetector(runner, rounds, tests, origResult).detect());
-        System.out.println();
+        if (resumed) {
+            this.checkpoint = previous.get();
+            this.seed = checkpoint.seed();
+            this.origResult = checkpoint.origResult();
+
+            System.out.println("[INFO] Resuming detection from " + DetectionCheckpoint.path(resultsPath) + " after " +
+                    checkpoint.rounds().size() + " rounds, using seed " + this.seed + " and " + pool.size() + " worker(s).");
+        } else {
+            this.seed = seed;
+
+            System.out.println("[INFO] Using seed " + seed + " and " + pool.size() + " worker(s).");
+
+            System.out.println("[INFO] Getting original results (" + tests.size() + " tests).");
+            this.origResult = CompactRunResult.from(origOrder, runSilent(tests));
+
+            System.out.println("[INFO] Detecting flaky tests.");
+            final FlakeRates flakeRates = new FlakyDetector(pool, flakyRounds, tests, origResult).estimate();
+            System.out.println();
+            System.out.println("[INFO] Found " + flakeRates.flaky().size() + " flaky tests in " + flakeRates.rounds() + " reruns.");
+            flakeRates.save(resultsPath.resolve(FlakeRates.FLAKE_RATES_PATH));
+            ResultCache.of(runner).markFlaky(flakeRates.flaky());
+
+            this.checkpoint = new DetectionCheckpoint(resultsPath, getClass(), seed, tests, origResult, flakeRates);
+            checkpoint.save();
+        }
+
+        if (pairwise != null) {
+            pairwise.cover(tests);
+        }
 
         final SmartRunner smartRunner;
 
@@ -38,15 +102,123 @@ public class RandomDetector extends ExecutingDetector {
             smartRunner = SmartRunner.withFramework(runner.project(), runner.framework());
         }
 
-        addFilter(new FlakyFilter(smartRunner));
+        // Tests written by the interrupted session were already reported.
+        final Set<String> found = checkpoint.found();
+        addFilter("PreviouslyFound", dt -> !found.contains(dt.name()));
+        addFilter("OutOfScope", this::inScope);
+        addFilter(new FlakyFilter(smartRunner, checkpoint.flakeRates()));
         addFilter(new UniqueFilter());
         addFilter(new VerifyFilter(runner));
         addFilter(new UniqueFilter());
     }
 
+    /**
+     * Pairwise orders depend on all of the orders generated before them, so orders are always
+     * generated in round order, even if a later round asks for its order first.
+     */
+    private synchronized List<String> order(final int round) {
+        while (nextRound <= round) {
+            orders.put(nextRound, nextOrder());
+            nextRound++;
+        }
+
+        return orders.remove(round);
+    }
+
+    /**
+     * @return The order of round nextRound. The caller moves on to the next round.
+     */
+    private List<String> nextOrder() {
+        final List<String> order = generate(tests, new Random(seed + nextRound));
+
+        // Also track coverage for orders not built by the pairwise generator, so it can be reported.
+        if (pairwise != null) {
+            pairwise.cover(order);
+        }
+
+        return order;
+    }
+
+    /**
+     * Generates the order to run in the given round. Subclasses can override this to run other kinds
+     * of orders, but orders must only depend on the random given and on previously generated orders.
+     */
+    protected List<String> generate(final List<String> tests, final Random random) {
+        if (pairwise != null) {
+            return pairwise.next(random);
+        } else {
+            final List<String> order = new ArrayList<>(tests);
+            Collections.shuffle(order, random);
+            return order;
+        }
+    }
+
+    /**
+     * Subclasses can override this to drop dependent tests they are not looking for before they are verified.
+     */
+    protected boolean inScope(final DependentTest dt) {
+        return true;
+    }
+
+    protected DetectionCheckpoint checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * @return The rule to use, before the rounds from the checkpoint are replayed into it.
+     */
+    protected StoppingRule newStoppingRule(final int rounds) {
+        return super.stoppingRule(rounds);
+    }
+
+    @Override
+    protected synchronized StoppingRule stoppingRule(final int rounds) {
+        // Orders may depend on the orders generated before them, so regenerate the orders of the rounds
+        // that were already run. This happens here rather than in the constructor so that subclasses
+        // are fully initialized when generating orders.
+        while (nextRound < checkpoint.rounds().size()) {
+            nextOrder();
+            nextRound++;
+        }
+
+        final StoppingRule stoppingRule = newStoppingRule(rounds);
+
+        for (final DetectionCheckpoint.Round round : checkpoint.rounds()) {
+            stoppingRule.recordNames(round.candidates(), round.found());
+        }
+
+        return stoppingRule;
+    }
+
     @Override
-    public List<DependentTest> results() throws Exception {
-        final RandomList<String> order = new RandomList<>(tests).shuffled();
-        return makeDts(tests, origResult, order, runSilent(order));
+    protected void roundFinished(final int round, final List<DependentTest> candidates, final List<DependentTest> found) {
+        checkpoint.addRound(round, candidates, found);
+        checkpoint.save();
+    }
+
+    @Override
+    public boolean resumes() {
+        return resumed;
+    }
+
+    @Override
+    protected synchronized String status() {
+        if (pairwise != null) {
+            return String.format(", %.2f%% pair coverage", pairwise.coverage());
+        } else {
+            return "";
+        }
+    }
+
+    @Override
+    public List<DependentTest> results(final Runner runner, final int round) throws Exception {
+        final List<String> order = order(round);
+
+        if (order.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Only the result codes are kept, so the full results can be collected right away.
+        return makeDts(origOrder, origResult, new TestOrder(order), CompactRunResult.from(origOrder, ResultCache.of(runner).run(runner, order)));
     }
 }
@@ -0,0 +1,24 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.reedoei.testrunner.runner.Runner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the original order backwards. There is only one such order, so this only runs one round.
+ */
+public class ReverseDetector extends RandomDetector {
+    public ReverseDetector(final Runner runner, final int rounds, final List<String> tests) {
+        super(runner, 1, rounds, tests, DetectorFactory.SEED);
+    }
+
+    @Override
+    protected List<String> generate(final List<String> tests, final Random random) {
+        final List<String> order = new ArrayList<>(tests);
+        Collections.reverse(order);
+        return order;
+    }
+}
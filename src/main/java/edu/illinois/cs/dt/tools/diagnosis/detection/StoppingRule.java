@@ -0,0 +1,176 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.reedoei.testrunner.configuration.Configuration;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Decides when a detector should stop running rounds.
+ *
+ * In adaptive mode, rounds are treated as samples of the dependent tests that can be found, and
+ * detection stops once the (bias-corrected Chao2) estimate of the number of dependent tests not yet
+ * discovered drops below a threshold. The estimate is based on how many of the dependent tests found
+ * so far were seen in exactly one round and exactly two rounds: if most were seen many times, it is
+ * unlikely that there are more left to find.
+ *
+ * In either mode, detection never runs more than the maximum number of rounds, and if there is a
+ * budget it stops when the next round would likely not finish within it.
+ */
+public class StoppingRule {
+    public static final String MODE = Configuration.config().getProperty("dt.detect.stopping", "adaptive");
+    public static final int MIN_ROUNDS = Configuration.config().getProperty("dt.detect.min.rounds", 3);
+    public static final double MAX_UNDISCOVERED =
+            Double.parseDouble(Configuration.config().getProperty("dt.detect.undiscovered", "0.5"));
+    public static final int BUDGET_SECONDS = Configuration.config().getProperty("dt.detect.budget.seconds", 0);
+
+    public static StoppingRule fromConfig(final int maxRounds) {
+        switch (MODE) {
+            case "adaptive":
+                return new StoppingRule(maxRounds, true, BUDGET_SECONDS);
+            case "fixed":
+                return new StoppingRule(maxRounds, false, BUDGET_SECONDS);
+            default:
+                throw new IllegalArgumentException("Unknown stopping rule '" + MODE + "' (dt.detect.stopping)");
+        }
+    }
+
+    /**
+     * @return A rule that runs all of the given rounds unless the budget runs out, for detectors whose
+     *         rounds are not random samples (so the adaptive estimate does not apply).
+     */
+    public static StoppingRule exhaustive(final int rounds) {
+        return new StoppingRule(rounds, false, BUDGET_SECONDS);
+    }
+
+    /**
+     * @return A rule that always runs exactly the given number of rounds.
+     */
+    public static StoppingRule fixed(final int rounds) {
+        return new StoppingRule(rounds, false, 0);
+    }
+
+    private final int maxRounds;
+    private final boolean adaptive;
+    private final long budgetMs;
+
+    private final long startTimeMs = System.currentTimeMillis();
+    private long lastRoundMs = startTimeMs;
+    private long longestRoundMs = 0;
+    private int roundsRun = 0;
+
+    // How many rounds each test showed up as dependent in, before filtering.
+    private final Map<String, Integer> occurrences = new HashMap<>();
+    // Tests that made it through the filters at least once.
+    private final Set<String> found = new HashSet<>();
+
+    public StoppingRule(final int maxRounds, final boolean adaptive, final int budgetSeconds) {
+        this.maxRounds = maxRounds;
+        this.adaptive = adaptive;
+        this.budgetMs = budgetSeconds * 1000L;
+    }
+
+    /**
+     * @param candidates The dependent tests found in the round, before filtering.
+     * @param accepted The dependent tests from the round that made it through all the filters.
+     */
+    public void record(final List<DependentTest> candidates, final List<DependentTest> accepted) {
+        recordNames(candidates.stream().map(DependentTest::name).collect(Collectors.toList()),
+               accepted.stream().map(DependentTest::name).collect(Collectors.toList()));
+    }
+
+    /**
+     * Same as {@link #record(List, List)}, but using only the names of the tests (e.g., when replaying
+     * rounds from a checkpoint).
+     */
+    public void recordNames(final List<String> candidates, final List<String> accepted) {
+        final long now = System.currentTimeMillis();
+        // With several workers, rounds finish in batches, so the longest gap is a batch's wall time.
+        longestRoundMs = Math.max(longestRoundMs, now - lastRoundMs);
+        lastRoundMs = now;
+        roundsRun++;
+
+        new HashSet<>(candidates).forEach(name -> occurrences.merge(name, 1, Integer::sum));
+        found.addAll(accepted);
+    }
+
+    public int roundsRun() {
+        return roundsRun;
+    }
+
+    public int maxRounds() {
+        return maxRounds;
+    }
+
+    public int roundsLeft() {
+        return maxRounds - roundsRun;
+    }
+
+    public long elapsedMs() {
+        return System.currentTimeMillis() - startTimeMs;
+    }
+
+    private long foundIn(final int rounds) {
+        return found.stream().filter(name -> occurrences.getOrDefault(name, 0) == rounds).count();
+    }
+
+    /**
+     * @return The estimated number of dependent tests that have not been found yet.
+     */
+    public double undiscovered() {
+        if (roundsRun == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        final double q1 = foundIn(1);
+        final double q2 = foundIn(2);
+        final double correction = (roundsRun - 1.0) / roundsRun;
+
+        if (q2 > 0) {
+            return correction * q1 * q1 / (2 * q2);
+        } else {
+            return correction * q1 * (q1 - 1) / 2;
+        }
+    }
+
+    private boolean overBudget() {
+        return budgetMs > 0 && roundsRun > 0 && elapsedMs() + longestRoundMs > budgetMs;
+    }
+
+    public boolean shouldStop() {
+        if (roundsRun >= maxRounds || overBudget()) {
+            return true;
+        }
+
+        return adaptive && roundsRun >= Math.min(MIN_ROUNDS, maxRounds) && undiscovered() < MAX_UNDISCOVERED;
+    }
+
+    /**
+     * @return An upper bound for how long the remaining rounds will take, in seconds.
+     */
+    public long remainingSeconds() {
+        if (roundsRun == 0) {
+            return 0;
+        }
+
+        long remainingMs = elapsedMs() / roundsRun * roundsLeft();
+        if (budgetMs > 0) {
+            remainingMs = Math.min(remainingMs, Math.max(0, budgetMs - elapsedMs()));
+        }
+
+        return remainingMs / 1000;
+    }
+
+    public String status() {
+        if (adaptive && roundsRun > 0) {
+            return String.format(", ~%.1f undiscovered", undiscovered());
+        } else {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection;
+
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Detects in two phases. The first rounds shuffle only the test classes, keeping the methods of each
+ * class in their original order, which finds cross-class dependencies with few, cheap orders. The
+ * remaining rounds shuffle the methods of only the classes involved in a dependency found in the first
+ * phase: the class of each dependent test, and every class whose position relative to it changed.
+ *
+ * The second phase only starts once the first phase has finished, so the orders do not depend on the
+ * number of workers.
+ */
+public class TwoLevelDetector extends RandomDetector {
+    // Negative means half of the rounds.
+    public static final int CLASS_ROUNDS = Configuration.config().getProperty("dt.detect.class.rounds", -1);
+
+    private final int classRounds;
+    private final Map<String, List<String>> byClass;
+    private final Map<String, Integer> originalPositions = new HashMap<>();
+
+    // The class order of each class-level round, to work out which classes moved.
+    private final Map<Integer, List<String>> classOrders = new HashMap<>();
+    private final Set<String> involved = new LinkedHashSet<>();
+    private int generated = 0;
+
+    public TwoLevelDetector(final Runner runner, final int rounds, final List<String> tests) {
+        super(runner, rounds, rounds, tests, DetectorFactory.SEED);
+
+        this.classRounds = CLASS_ROUNDS >= 0 ? Math.min(CLASS_ROUNDS, rounds) : Math.max(1, rounds / 2);
+        this.byClass = RandomClassDetector.byClass(tests);
+
+        final List<String> classes = new ArrayList<>(byClass.keySet());
+        for (int i = 0; i < classes.size(); i++) {
+            originalPositions.put(classes.get(i), i);
+        }
+    }
+
+    @Override
+    protected int batchLimit(final int round) {
+        return round < classRounds ? classRounds - round : Integer.MAX_VALUE;
+    }
+
+    @Override
+    protected synchronized List<String> generate(final List<String> tests, final Random random) {
+        final int round = generated++;
+
+        if (round < classRounds) {
+            final List<String> classOrder = new ArrayList<>(byClass.keySet());
+            Collections.shuffle(classOrder, random);
+            classOrders.put(round, classOrder);
+
+            final List<String> order = new ArrayList<>(tests.size());
+            classOrder.forEach(c -> order.addAll(byClass.get(c)));
+            return order;
+        } else {
+            // Empty if no dependencies were found between classes, in which case the round is skipped.
+            final List<String> order = tests.stream()
+                    .filter(test -> involved.contains(RandomClassDetector.className(test)))
+                    .collect(Collectors.toList());
+            Collections.shuffle(order, random);
+            return order;
+        }
+    }
+
+    @Override
+    protected synchronized StoppingRule stoppingRule(final int rounds) {
+        final StoppingRule stoppingRule = super.stoppingRule(rounds);
+
+        for (final DetectionCheckpoint.Round round : checkpoint().rounds()) {
+            involve(round.round(), round.found());
+        }
+
+        return stoppingRule;
+    }
+
+    @Override
+    protected void roundFinished(final int round, final List<DependentTest> candidates, final List<DependentTest> found) {
+        super.roundFinished(round, candidates, found);
+
+        involve(round, found.stream().map(DependentTest::name).collect(Collectors.toList()));
+    }
+
+    private synchronized void involve(final int round, final List<String> found) {
+        final List<String> classOrder = classOrders.get(round);
+
+        // Only class-level rounds decide what to refine.
+        if (classOrder == null) {
+            return;
+        }
+
+        final Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < classOrder.size(); i++) {
+            positions.put(classOrder.get(i), i);
+        }
+
+        for (final String test : found) {
+            final String victim = RandomClassDetector.className(test);
+            involved.add(victim);
+
+            final int originalPosition = originalPositions.get(victim);
+            final int position = positions.get(victim);
+
+            for (final String c : classOrder) {
+                if ((originalPositions.get(c) < originalPosition) != (positions.get(c) < position)) {
+                    involved.add(c);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected synchronized String status() {
+        return String.format(", %d classes to refine", involved.size());
+    }
+}
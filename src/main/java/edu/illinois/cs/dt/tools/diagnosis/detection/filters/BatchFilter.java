@@ -0,0 +1,18 @@
+package edu.illinois.cs.dt.tools.diagnosis.detection.filters;
+
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A filter that can decide about all of the dependent tests found in a round at once, e.g., to share
+ * work between them. Detectors hand it each round's dependent tests as one batch, in order.
+ */
+public interface BatchFilter extends Predicate<DependentTest> {
+    /**
+     * @return The dependent tests that pass the filter, in the same order. Must make the same decisions
+     *         as testing each dependent test on its own, in order.
+     */
+    List<DependentTest> filter(final List<DependentTest> dts);
+}
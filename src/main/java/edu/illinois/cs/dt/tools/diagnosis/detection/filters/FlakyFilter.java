@@ -1,20 +1,42 @@
 package edu.illinois.cs.dt.tools.diagnosis.detection.filters;
 
-import com.reedoei.testrunner.runner.Runner;
+import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.runner.SmartRunner;
+import edu.illinois.cs.dt.tools.diagnosis.detection.FlakeRates;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 
 import java.util.function.Predicate;
 
 public class FlakyFilter implements Predicate<DependentTest> {
+    public static final double MAX_FLAKE_RATE =
+            Double.parseDouble(Configuration.config().getProperty("dt.flaky.max.rate", "0.0"));
+
     private final SmartRunner runner;
+    private final FlakeRates flakeRates;
 
     public FlakyFilter(final SmartRunner runner) {
+        this(runner, new FlakeRates());
+    }
+
+    /**
+     * Tests whose estimated flake rate is above dt.flaky.max.rate are filtered out. By default, that is
+     * any test that flipped at all, and tests the runner itself has seen flip are also filtered out.
+     * With a higher maximum, tests that only rarely flip are kept, since a dependent test that is found
+     * in an order is then unlikely to be explained by flakiness alone.
+     */
+    public FlakyFilter(final SmartRunner runner, final FlakeRates flakeRates) {
         this.runner = runner;
+        this.flakeRates = flakeRates;
     }
 
     @Override
     public boolean test(final DependentTest dependentTest) {
-        return !runner.info().isFlaky(dependentTest.name());
+        if (flakeRates.rate(dependentTest.name()) > MAX_FLAKE_RATE) {
+            return false;
+        }
+
+        // Includes the tests that the runner's copies in a RunnerPool have seen flip.
+        return MAX_FLAKE_RATE > 0 || !ResultCache.of(runner).isFlaky(dependentTest.name());
     }
 }
@@ -1,13 +1,34 @@
 package edu.illinois.cs.dt.tools.diagnosis.detection.filters;
 
 import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
+import com.reedoei.testrunner.data.results.TestResult;
 import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
 import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.TestRun;
 
-import java.util.function.Predicate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
-public class VerifyFilter implements Predicate<DependentTest> {
+/**
+ * Reruns the intended and revealed orders of each dependent test to check that it really is dependent.
+ *
+ * In batch mode, the orders to verify are grouped so that every order that is a prefix of another is
+ * checked by running only the longer one: a test's result does not depend on the tests that run after
+ * it. All of the dependent tests from one round of detection share the two orders of that round, so
+ * verifying them takes two runs per verification round instead of two per dependent test.
+ */
+public class VerifyFilter implements BatchFilter {
     private static final boolean VERIFY_DTS = Configuration.config().getProperty("dt.verify", true);
+    private static final boolean BATCH = Configuration.config().getProperty("dt.verify.batch", true);
+
     private final Runner runner;
 
     public VerifyFilter(final Runner runner) {
@@ -22,4 +43,115 @@ public class VerifyFilter implements Predicate<DependentTest> {
             return true;
         }
     }
+
+    @Override
+    public List<DependentTest> filter(final List<DependentTest> dts) {
+        if (!VERIFY_DTS) {
+            return dts;
+        }
+
+        if (!BATCH || dts.size() <= 1) {
+            return dts.stream().filter(this).collect(Collectors.toList());
+        }
+
+        final List<Check> checks = new ArrayList<>();
+        for (final DependentTest dt : dts) {
+            checks.add(new Check(dt, dt.intended()));
+            checks.add(new Check(dt, dt.revealed()));
+        }
+
+        final List<List<String>> orders = group(checks);
+        if (orders.size() < checks.size()) {
+            System.out.printf("[INFO] Verifying %d dependent tests using %d orders\n", dts.size(), orders.size());
+        }
+
+        final Set<DependentTest> failed = new HashSet<>();
+
+        final ResultCache cache = ResultCache.of(runner);
+
+        for (int i = 0; i < TestRun.VERIFY_ROUNDS; i++) {
+            final Map<Integer, Map<String, TestResult>> results = new HashMap<>();
+
+            for (final Check check : checks) {
+                if (failed.contains(check.dt)) {
+                    continue;
+                }
+
+                // As in TestRun.verify, each round needs one more agreeing observation than the last.
+                final Result result = cache.lookup(check.order, check.dt.name(), i + 2).orElseGet(() -> {
+                    final Map<String, TestResult> orderResults =
+                            results.computeIfAbsent(check.group, group -> run(orders.get(group)));
+                    final TestResult testResult = orderResults.get(check.dt.name());
+                    return testResult == null ? null : testResult.result();
+                });
+
+                System.out.printf("[DEBUG] Verifying %s, status: expected %s, got %s\n",
+                        check.dt.name(), check.run.result(), result);
+
+                if (!check.run.result().equals(result)) {
+                    failed.add(check.dt);
+                }
+            }
+        }
+
+        return dts.stream().filter(dt -> !failed.contains(dt)).collect(Collectors.toList());
+    }
+
+    private Map<String, TestResult> run(final List<String> order) {
+        try {
+            return ResultCache.of(runner).run(runner, order).results();
+        } catch (Exception e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Assigns each check to an order to run, such that the check's order is a prefix of it.
+     *
+     * @return The distinct orders to run.
+     */
+    private static List<List<String>> group(final List<Check> checks) {
+        final List<List<String>> orders = new ArrayList<>();
+
+        final List<Check> longestFirst = new ArrayList<>(checks);
+        longestFirst.sort(Comparator.comparingInt((Check check) -> check.order.size()).reversed());
+
+        for (final Check check : longestFirst) {
+            for (int i = 0; i < orders.size() && check.group < 0; i++) {
+                if (isPrefix(check.order, orders.get(i))) {
+                    check.group = i;
+                }
+            }
+
+            if (check.group < 0) {
+                check.group = orders.size();
+                orders.add(check.order);
+            }
+        }
+
+        return orders;
+    }
+
+    private static boolean isPrefix(final List<String> prefix, final List<String> order) {
+        if (prefix.size() > order.size()) {
+            return false;
+        }
+
+        // Checking the last test first rules out most orders without comparing the whole prefix.
+        final int last = prefix.size() - 1;
+        return (last < 0 || prefix.get(last).equals(order.get(last))) && prefix.equals(order.subList(0, prefix.size()));
+    }
+
+    private static class Check {
+        private final DependentTest dt;
+        private final TestRun run;
+        private final List<String> order;
+        private int group = -1;
+
+        private Check(final DependentTest dt, final TestRun run) {
+            this.dt = dt;
+            this.run = run;
+            this.order = run.verifyOrder(dt.name());
+        }
+    }
 }
@@ -6,6 +6,8 @@ import com.reedoei.eunomia.util.ExecutionInfoBuilder;
 import com.reedoei.eunomia.util.StandardMain;
 import com.reedoei.testrunner.util.MavenClassLoader;
 import edu.illinois.cs.dt.tools.diagnosis.Diagnoser;
+import edu.illinois.cs.dt.tools.runner.ClasspathHash;
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.project.MavenProject;
 import soot.Main;
 import soot.Pack;
@@ -15,10 +17,20 @@ import soot.Transform;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Optional;
 
 public class Instrumentation extends StandardMain {
+    // Held while using sootOutput and the static field info, which are shared by all modules.
+    public static final Object LOCK = new Object();
+
+    private static final Path SOOT_OUTPUT = Paths.get("sootOutput");
+    // The classpath hash of the classes in sootOutput, see instrumentProject.
+    private static final Path STAMP_PATH = Paths.get("sootOutput.stamp");
+
     private final String sootCp;
     private final Path inputPath;
     private final Path outputPath;
@@ -31,16 +43,38 @@ public class Instrumentation extends StandardMain {
                 "--output-dir", outputPath.toString())).inheritIO().start().waitFor();
     }
 
+    /**
+     * Instruments the project's classes into sootOutput, unless they are already there. sootOutput is shared
+     * by all modules, so this holds {@link #LOCK} throughout; callers that go on to run the instrumented
+     * classes should hold it for as long as they use them.
+     *
+     * sootOutput is stamped with a hash of the classpath it was instrumented with, which covers the
+     * module's classes, its dependencies and the instrumenter itself, and is only reused if that matches.
+     */
     public static void instrumentProject(final MavenProject project) throws IOException, InterruptedException {
-        if (FileUtil.isEmpty(Paths.get("sootOutput"))) {
-            final String sootCp = new MavenClassLoader(project).classpath() + File.pathSeparator +
-                    Diagnoser.cp() + File.pathSeparator +
-                    Classpath.build(System.getProperty("java.home") + "/lib/*");
-
-            System.out.println("[INFO] Instrumenting test classes.");
-            Instrumentation.instrument(sootCp, Paths.get(project.getBuild().getTestOutputDirectory()), StaticFieldInfo.STATIC_FIELD_INFO_PATH);
-            System.out.println("[INFO] Instrumenting classes.");
-            Instrumentation.instrument(sootCp, Paths.get(project.getBuild().getOutputDirectory()), StaticFieldInfo.STATIC_FIELD_INFO_PATH);
+        final String sootCp = new MavenClassLoader(project).classpath() + File.pathSeparator +
+                Diagnoser.cp() + File.pathSeparator +
+                Classpath.build(System.getProperty("java.home") + "/lib/*");
+
+        synchronized (LOCK) {
+            final Optional<String> stamp = ClasspathHash.of(String.join(File.pathSeparator,
+                    project.getBuild().getOutputDirectory(), project.getBuild().getTestOutputDirectory(), sootCp));
+
+            if (!stamp.isPresent() || !Files.exists(STAMP_PATH) || !stamp.get().equals(FileUtil.readFile(STAMP_PATH).trim())) {
+                FileUtils.deleteDirectory(SOOT_OUTPUT.toFile());
+                Files.deleteIfExists(STAMP_PATH);
+            }
+
+            if (FileUtil.isEmpty(SOOT_OUTPUT)) {
+                System.out.println("[INFO] Instrumenting test classes.");
+                Instrumentation.instrument(sootCp, Paths.get(project.getBuild().getTestOutputDirectory()), StaticFieldInfo.STATIC_FIELD_INFO_PATH);
+                System.out.println("[INFO] Instrumenting classes.");
+                Instrumentation.instrument(sootCp, Paths.get(project.getBuild().getOutputDirectory()), StaticFieldInfo.STATIC_FIELD_INFO_PATH);
+
+                if (stamp.isPresent()) {
+                    Files.write(STAMP_PATH, stamp.get().getBytes(StandardCharsets.UTF_8));
+                }
+            }
         }
     }
 
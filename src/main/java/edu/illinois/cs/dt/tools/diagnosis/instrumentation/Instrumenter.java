@@ -18,6 +18,7 @@ import soot.jimple.InvokeStmt;
 import soot.jimple.Jimple;
 import soot.jimple.ReturnStmt;
 import soot.jimple.ReturnVoidStmt;
+import soot.jimple.StaticFieldRef;
 import soot.jimple.StaticInvokeExpr;
 import soot.jimple.Stmt;
 import soot.jimple.StringConstant;
@@ -33,6 +34,7 @@ public class Instrumenter extends BodyTransformer {
     private final Path outputPath;
 
     private SootMethod logStatic;
+    private SootMethod logStaticWrite;
     private SootMethod output;
     private SootMethod concat;
 
@@ -44,6 +46,7 @@ public class Instrumenter extends BodyTransformer {
 
         final SootClass staticTracer = Scene.v().loadClassAndSupport(StaticTracer.class.getCanonicalName());
         logStatic = staticTracer.getMethodByName("logStatic");
+        logStaticWrite = staticTracer.getMethodByName("logStaticWrite");
         output = staticTracer.getMethodByName("output");
         concat = staticTracer.getMethodByName("concat");
     }
@@ -139,6 +142,13 @@ public class Instrumenter extends BodyTransformer {
                 final String fqName = fqName(statement.getFieldRef().getField());
 
                 units.insertBefore(staticInvoke(logStatic, StringConstant.v(fqName)), unit);
+
+                // Static initializers set the initial state rather than changing it, so they are not writes.
+                if (statement instanceof AssignStmt &&
+                        ((AssignStmt) statement).getLeftOp() instanceof StaticFieldRef &&
+                        !b.getMethod().getName().equals(SootMethod.staticInitializerName)) {
+                    units.insertBefore(staticInvoke(logStaticWrite, StringConstant.v(fqName)), unit);
+                }
             }
 
             if (statement.containsInvokeExpr()) {
@@ -146,26 +156,38 @@ public class Instrumenter extends BodyTransformer {
                 final String fqName = fqName(expr.getMethod());
 
                 if (fqName.equals("java.lang.System.getProperty")) {
-                    final StaticInvokeExpr invoke =
-                            Jimple.v().newStaticInvokeExpr(
-                                    concat.makeRef(),
-                                    StringConstant.v(SystemPropertyAccessor.SYSTEM_PROPERTY),
-                                    expr.getArg(0));
-
-                    final SootClass string = Scene.v().loadClassAndSupport(String.class.getCanonicalName());
-                    final Local local = Jimple.v().newLocal("tmpSystemPropertyConcatName", string.getType());
-                    b.getLocals().add(local);
-
-                    final AssignStmt assignStmt = Jimple.v().newAssignStmt(local, invoke);
-                    final InvokeStmt invokeStmt = staticInvoke(logStatic, local);
-
-                    units.insertBefore(invokeStmt, unit);
-                    units.insertBefore(assignStmt, invokeStmt);
+                    logSystemProperty(b, unit, units, expr, logStatic);
+                } else if (fqName.equals("java.lang.System.setProperty") ||
+                           fqName.equals("java.lang.System.clearProperty")) {
+                    logSystemProperty(b, unit, units, expr, logStatic);
+                    logSystemProperty(b, unit, units, expr, logStaticWrite);
                 }
             }
         }
     }
 
+    /**
+     * Inserts a call to the log method, passing the name of the system property accessed by expr.
+     */
+    private void logSystemProperty(final Body b, final Unit unit, final PatchingChain<Unit> units,
+                                   final InvokeExpr expr, final SootMethod log) {
+        final StaticInvokeExpr invoke =
+                Jimple.v().newStaticInvokeExpr(
+                        concat.makeRef(),
+                        StringConstant.v(SystemPropertyAccessor.SYSTEM_PROPERTY),
+                        expr.getArg(0));
+
+        final SootClass string = Scene.v().loadClassAndSupport(String.class.getCanonicalName());
+        final Local local = Jimple.v().newLocal("tmpSystemPropertyConcatName", string.getType());
+        b.getLocals().add(local);
+
+        final AssignStmt assignStmt = Jimple.v().newAssignStmt(local, invoke);
+        final InvokeStmt invokeStmt = staticInvoke(log, local);
+
+        units.insertBefore(invokeStmt, unit);
+        units.insertBefore(assignStmt, invokeStmt);
+    }
+
     private void instrumentMethod(final Body b) {
         final PatchingChain<Unit> units = b.getUnits();
         units.snapshotIterator().forEachRemaining(unit -> instrumentFields(b, unit, units));
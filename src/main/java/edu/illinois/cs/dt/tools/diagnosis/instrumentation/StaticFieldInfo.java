@@ -22,6 +22,17 @@ public class StaticFieldInfo extends FileCache<StaticTracer> {
     // NOTE: If this is changed, then will have to instrument everything
     public static final Path STATIC_FIELD_INFO_PATH = Paths.get("static-field-info").toAbsolutePath();
 
+    /**
+     * @return The classpath to run the project's tests with the instrumented classes (from
+     *         {@link Instrumentation#instrumentProject(MavenProject)}).
+     */
+    public static String instrumentedClasspath(final MavenProject project) {
+        return Classpath.build(
+                Paths.get("").resolve("sootOutput").toAbsolutePath().toString(),
+                project.getBuild().getDirectory() + "/dependency/*") + File.pathSeparator +
+                Diagnoser.cp();
+    }
+
     private final MavenProject project;
     private final Runner runner;
     private final MinimizeTestsResult minimized;
@@ -64,11 +75,7 @@ public class StaticFieldInfo extends FileCache<StaticTracer> {
         System.out.println("[INFO] Instrumenting to get lists of static fields.");
         Instrumentation.instrumentProject(project);
 
-        final String sootOutputCp =
-                Classpath.build(
-                        Paths.get("").resolve("sootOutput").toAbsolutePath().toString(),
-                        project.getBuild().getDirectory() + "/dependency/*") + File.pathSeparator +
-                        Diagnoser.cp();
+        final String sootOutputCp = instrumentedClasspath(project);
 
         System.out.println("[INFO] Running tests.");
 
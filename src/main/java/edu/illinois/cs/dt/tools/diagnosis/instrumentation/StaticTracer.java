@@ -34,6 +34,7 @@ public class StaticTracer {
         tracerModes.put(TracerMode.FIRST_ACCESS, StaticTracer::monitorFirstAccess);
         tracerModes.put(TracerMode.REWRITE, StaticTracer::rewrite);
         tracerModes.put(TracerMode.TRACK, StaticTracer::track);
+        tracerModes.put(TracerMode.FOOTPRINT, fieldName -> tracer().reads().add(fieldName));
     }
 
     public static <T> T inMode(final TracerMode mode, final Callable<T> c) throws Exception {
@@ -56,6 +57,9 @@ public class StaticTracer {
     private final Map<String, StaticAccessInfo> staticFields = new ConcurrentHashMap<>();
     private final Map<String, String> firstAccessVals = new ConcurrentHashMap<>();
     private final Set<String> rewrittenProperties = Collections.synchronizedSet(new HashSet<>());
+    // Only filled in FOOTPRINT mode. Every access is a read, writes are also recorded separately.
+    private final Set<String> reads = Collections.synchronizedSet(new HashSet<>());
+    private final Set<String> writes = Collections.synchronizedSet(new HashSet<>());
 
     public static StaticTracer tracer() {
         return tracer;
@@ -80,6 +84,14 @@ public class StaticTracer {
         return staticFields;
     }
 
+    public Set<String> reads() {
+        return reads;
+    }
+
+    public Set<String> writes() {
+        return writes;
+    }
+
     public static void logStatic(final String fieldName) {
         tracerModes
             .getOrDefault(TracerMode.valueOf(
@@ -88,6 +100,16 @@ public class StaticTracer {
             .accept(fieldName);
     }
 
+    /**
+     * Called (in addition to logStatic) before a static field is assigned or a system property is set.
+     */
+    public static void logStaticWrite(final String fieldName) {
+        if (TracerMode.FOOTPRINT.equals(TracerMode.valueOf(
+                Configuration.config().getProperty("statictracer.mode", String.valueOf(TracerMode.NONE))))) {
+            tracer().writes().add(fieldName);
+        }
+    }
+
     private static void track(final String fieldName) {
         tracer().staticFields().computeIfAbsent(fieldName, k -> {
             StackTraceElement[] stackTrace;
@@ -167,6 +189,8 @@ public class StaticTracer {
             tracer().staticFields().clear();
             tracer().firstAccessVals().clear();
             tracer().rewrittenProperties().clear();
+            tracer().reads().clear();
+            tracer().writes().clear();
         } catch (IOException ignored) {}
     }
 
@@ -4,5 +4,7 @@ public enum TracerMode {
     NONE,
     TRACK,
     REWRITE,
-    FIRST_ACCESS
+    FIRST_ACCESS,
+    // Only records which fields each test reads and writes, without stack traces.
+    FOOTPRINT
 }
@@ -0,0 +1,254 @@
+package edu.illinois.cs.dt.tools.minimizer;
+
+import com.reedoei.eunomia.util.Util;
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
+import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
+import edu.illinois.cs.dt.tools.runner.data.TestRun;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Narrows down the dependencies of several dependent tests from the same order together, so that one
+ * run answers all of them instead of each minimizer running its own copy of nearly the same orders.
+ *
+ * Dependent tests whose runs are prefixes of one order form a group. Each run of the group keeps the
+ * dependent tests where they were in the order, along with a subset of the other tests, and gives
+ * every dependent test its result after the tests before it. The subset is bisected like in
+ * {@link TestMinimizer}: the dependent tests that get their expected result with the top half continue
+ * with the top half, the others that get it with the bottom half continue with the bottom half, and
+ * the rest stop there.
+ *
+ * Since the other dependent tests of a group always run, this cannot tell whether one dependent test
+ * depends on another. So each dependent test is then minimized on its own by a {@link TestMinimizer},
+ * but starting from the (much shorter) order it was narrowed down to, and writing its own result as
+ * usual. If the shorter order does not give the expected result, the full order is used instead.
+ */
+public class JointMinimizer {
+    public static final boolean ENABLED = Configuration.config().getProperty("testminimizer.joint", false);
+
+    private final TestMinimizerBuilder builder;
+    private final Runner runner;
+
+    public JointMinimizer(final TestMinimizerBuilder builder, final Runner runner) {
+        this.builder = builder;
+        this.runner = runner;
+    }
+
+    public Stream<TestMinimizer> minimizers(final List<DependentTest> dts) {
+        final List<Target> targets = new ArrayList<>();
+
+        for (final DependentTest dt : dts) {
+            for (final TestRun run : dt.runsToMinimize()) {
+                final Target target = new Target(dt.name(), run);
+
+                // Already minimized (e.g., before a restart), so the minimizer will just load the result.
+                if (Files.exists(MinimizeTestsResult.path(target.name, target.expected,
+                        OutputRoot.resolve(runner, Paths.get("minimized"))))) {
+                    target.order = run.order();
+                    target.alone = true;
+                } else if (DependentTest.VERIFY_DTS && !run.verify(dt.name(), runner)) {
+                    continue;
+                }
+
+                targets.add(target);
+            }
+        }
+
+        return group(targets).stream().flatMap(group -> {
+            if (group.size() > 1) {
+                narrow(group);
+            }
+
+            return group.stream().map(this::minimizer).filter(Optional::isPresent).map(Optional::get);
+        });
+    }
+
+    /**
+     * Groups the targets by order: a target joins the first group whose longest order starts with its own.
+     */
+    private static List<List<Target>> group(final List<Target> targets) {
+        final List<Target> sorted = new ArrayList<>(targets);
+        sorted.sort(Comparator.comparingInt((Target t) -> t.full.size()).reversed());
+
+        final List<List<Target>> groups = new ArrayList<>();
+
+        for (final Target target : sorted) {
+            final Optional<List<Target>> group = target.alone ? Optional.empty() : groups.stream()
+                    .filter(g -> !g.get(0).alone && startsWith(g.get(0).full, target.full) &&
+                            g.stream().noneMatch(t -> t.name.equals(target.name)))
+                    .findFirst();
+
+            if (group.isPresent()) {
+                group.get().add(target);
+            } else {
+                final List<Target> newGroup = new ArrayList<>();
+                newGroup.add(target);
+                groups.add(newGroup);
+            }
+        }
+
+        return groups;
+    }
+
+    private static boolean startsWith(final List<String> order, final List<String> prefix) {
+        return order.size() >= prefix.size() && order.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private void narrow(final List<Target> group) {
+        final List<String> fullOrder = group.get(0).full;
+        final Set<String> names = group.stream().map(t -> t.name).collect(Collectors.toSet());
+        final List<String> candidates = fullOrder.stream().filter(t -> !names.contains(t)).collect(Collectors.toList());
+
+        System.out.println("[INFO] Narrowing down the dependencies of " + group.size() +
+                " dependent tests from the same order together.");
+
+        final List<Target> matching = new ArrayList<>();
+        for (final Target target : group) {
+            if (result(fullOrder, candidates, group, target) == target.expected) {
+                matching.add(target);
+            } else {
+                // Minimized on its own, from its full order.
+                target.order = target.run.order();
+            }
+        }
+
+        final Deque<Work> work = new ArrayDeque<>();
+        if (!matching.isEmpty()) {
+            work.add(new Work(candidates, matching));
+        }
+
+        while (!work.isEmpty()) {
+            final Work current = work.pop();
+
+            if (current.candidates.size() <= 1) {
+                current.targets.forEach(target -> target.order = narrowed(fullOrder, current.candidates, group, target));
+                continue;
+            }
+
+            System.out.printf("\r\033[2K[INFO] Trying both halves, %d dts remaining for %d dependent tests.",
+                    current.candidates.size(), current.targets.size());
+
+            final List<String> top = Util.topHalf(current.candidates);
+            final List<String> bot = Util.botHalf(current.candidates);
+
+            final List<Target> topTargets = new ArrayList<>();
+            final List<Target> botTargets = new ArrayList<>();
+
+            for (final Target target : current.targets) {
+                // Either half is enough if both give the expected result (e.g., if the test depends on
+                // another dependent test, which is always there), since the minimizer does the rest.
+                if (result(fullOrder, top, group, target) == target.expected) {
+                    topTargets.add(target);
+                } else if (result(fullOrder, bot, group, target) == target.expected) {
+                    botTargets.add(target);
+                } else {
+                    target.order = narrowed(fullOrder, current.candidates, group, target);
+                }
+            }
+
+            if (!botTargets.isEmpty()) {
+                work.push(new Work(bot, botTargets));
+            }
+            if (!topTargets.isEmpty()) {
+                work.push(new Work(top, topTargets));
+            }
+        }
+
+        System.out.println();
+    }
+
+    /**
+     * @return The tests of the full order that are in the candidates or are targets, up to the last target.
+     *         All targets of the group are always included, even once they continue with different
+     *         candidates, so that each target's result always comes from the same kind of order.
+     */
+    private static List<String> joint(final List<String> fullOrder, final List<String> candidates, final List<Target> targets) {
+        final Set<String> included = new HashSet<>(candidates);
+        targets.forEach(t -> included.add(t.name));
+
+        final int end = targets.stream().mapToInt(t -> t.full.size()).max().orElse(0);
+
+        return fullOrder.subList(0, end).stream().filter(included::contains).collect(Collectors.toList());
+    }
+
+    /**
+     * @return The result of the target in the joint order. All targets of the order get their result
+     *         from the same run, so only the first one asked for actually runs anything.
+     */
+    private Result result(final List<String> fullOrder, final List<String> candidates, final List<Target> targets,
+                          final Target target) {
+        return ResultCache.of(runner).result(runner, joint(fullOrder, candidates, targets), target.name, 1).orElse(null);
+    }
+
+    private static List<String> narrowed(final List<String> fullOrder, final List<String> candidates,
+                                         final List<Target> targets, final Target target) {
+        final List<String> order = joint(fullOrder, candidates, targets);
+        return new ArrayList<>(order.subList(0, order.indexOf(target.name)));
+    }
+
+    private Optional<TestMinimizer> minimizer(final Target target) {
+        final TestMinimizerBuilder targetBuilder = builder.dependentTest(target.name);
+
+        try {
+            if (target.order.size() < target.run.order().size()) {
+                final TestMinimizer minimizer = targetBuilder.testOrder(target.order).build();
+
+                if (minimizer.expected() == target.expected) {
+                    return Optional.of(minimizer);
+                }
+
+                System.out.println("[WARNING] Narrowed order for " + target.name + " gives " + minimizer.expected() +
+                        " instead of " + target.expected + ", minimizing from the full order instead.");
+            }
+
+            return Optional.of(targetBuilder.testOrder(target.run.order()).build());
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private static class Target {
+        private final String name;
+        private final TestRun run;
+        private final Result expected;
+        // The run's order followed by the target.
+        private final List<String> full;
+        // The order to minimize from, once narrowed down.
+        private List<String> order;
+        // Not narrowed down with other targets.
+        private boolean alone = false;
+
+        private Target(final String name, final TestRun run) {
+            this.name = name;
+            this.run = run;
+            this.expected = run.result();
+            this.full = run.verifyOrder(name);
+            this.order = run.order();
+        }
+    }
+
+    private static class Work {
+        private final List<String> candidates;
+        private final List<Target> targets;
+
+        private Work(final List<String> candidates, final List<Target> targets) {
+            this.candidates = candidates;
+            this.targets = targets;
+        }
+    }
+}
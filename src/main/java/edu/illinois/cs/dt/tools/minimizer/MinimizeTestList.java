@@ -5,7 +5,12 @@ import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.mavenplugin.TestPlugin;
 import com.reedoei.testrunner.runner.Runner;
 import com.reedoei.testrunner.runner.RunnerFactory$;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+import edu.illinois.cs.dt.tools.runner.RunMetrics;
+import edu.illinois.cs.dt.tools.runner.RunnerPool;
+import edu.illinois.cs.dt.tools.runner.data.DependentTest;
 import edu.illinois.cs.dt.tools.runner.data.DependentTestList;
+import edu.illinois.cs.dt.tools.runner.data.TestRun;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.maven.project.MavenProject;
 
@@ -14,10 +19,19 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class MinimizeTestList extends TestPlugin {
+    // How many dependent tests to minimize at once, each with its own runner.
+    public static final int WORKERS = Configuration.config().getProperty("testminimizer.workers", 1);
+
     private TestMinimizerBuilder builder;
     private Runner runner;
 
@@ -31,6 +45,10 @@ public class MinimizeTestList extends TestPlugin {
         System.out.println("[INFO] Creating minimizers for file: " + path);
 
         try {
+            if (JointMinimizer.ENABLED) {
+                return new JointMinimizer(builder, runner).minimizers(DependentTestList.fromFile(path).dts());
+            }
+
             return DependentTestList.fromFile(path).dts().stream()
                     .flatMap(dt -> dt.minimizers(builder, runner));
         } catch (IOException e) {
@@ -45,24 +63,93 @@ public class MinimizeTestList extends TestPlugin {
     }
 
     public Stream<MinimizeTestsResult> runDependentTestFile(final Path dtFile) {
-        final Path outputPath = Paths.get(Configuration.config().getProperty("testminimizer.output_dir", ""));
+        final Path outputPath = OutputRoot.resolve(runner, Paths.get(Configuration.config().getProperty("testminimizer.output_dir", "")));
+        final String baseName = FilenameUtils.getBaseName(String.valueOf(dtFile.toAbsolutePath()));
+        final Path path = outputPath.resolve(baseName);
 
-        return fromDtList(dtFile).flatMap(minimizer -> {
-            try {
-                final String baseName = FilenameUtils.getBaseName(String.valueOf(dtFile.toAbsolutePath()));
-                final Path path = outputPath.resolve(baseName);
+        // Joint minimization builds all the minimizers with the same runner, so it stays sequential.
+        if (WORKERS > 1 && !JointMinimizer.ENABLED) {
+            return schedule(dtFile, path);
+        }
 
-                FileUtil.makeDirectoryDestructive(path);
+        return fromDtList(dtFile).flatMap(minimizer -> minimize(minimizer, path).map(Stream::of).orElse(Stream.empty()));
+    }
 
-                final MinimizeTestsResult result = minimizer.get();
-                result.print(path);
-                return Stream.of(result);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    private static Optional<MinimizeTestsResult> minimize(final TestMinimizer minimizer, final Path path) {
+        try {
+            FileUtil.makeDirectoryDestructive(path);
+
+            final MinimizeTestsResult result = minimizer.get();
+            result.print(path);
+            return Optional.of(result);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return Optional.empty();
+    }
 
+    /**
+     * Minimizes the dependent tests in the file testminimizer.workers at a time, each with its own runner.
+     * The cheapest ones start first, where the cost of a dependent test is the time its order is expected
+     * to take (see {@link RunMetrics#estimateSeconds}), since that is what every run of the minimizer
+     * costs at first. This way, most results are written early, and the longest ones do not wait behind
+     * each other.
+     *
+     * @return The results, in the order they finish. Each one is written as soon as it finishes.
+     */
+    private Stream<MinimizeTestsResult> schedule(final Path dtFile, final Path path) {
+        final RunMetrics metrics = RunMetrics.of(runner);
+        final List<Job> jobs = new ArrayList<>();
+
+        try {
+            for (final DependentTest dt : DependentTestList.fromFile(dtFile).dts()) {
+                for (final TestRun run : dt.runsToMinimize()) {
+                    jobs.add(new Job(dt, run, metrics.estimateSeconds(run.verifyOrder(dt.name()))));
+                }
+            }
+        } catch (IOException e) {
             return Stream.empty();
-        });
+        }
+
+        jobs.sort(Comparator.comparingDouble(job -> job.cost));
+
+        System.out.println("[INFO] Minimizing " + jobs.size() + " dependent tests from " + dtFile + ", " +
+                WORKERS + " at a time, cheapest first.");
+
+        final RunnerPool pool = new RunnerPool(runner, WORKERS);
+        final BlockingQueue<Optional<MinimizeTestsResult>> done = new LinkedBlockingQueue<>();
+
+        for (final Job job : jobs) {
+            pool.submit(r -> {
+                Optional<MinimizeTestsResult> result = Optional.empty();
+
+                try {
+                    result = job.dt.minimizer(builder.runner(r), job.run, r).findFirst()
+                            .flatMap(minimizer -> minimize(minimizer, path));
+                } finally {
+                    done.add(result);
+                }
+
+                return result;
+            });
+        }
+
+        if (jobs.isEmpty()) {
+            pool.shutdown();
+        }
+
+        return IntStream.range(0, jobs.size()).mapToObj(i -> {
+            try {
+                return done.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (i == jobs.size() - 1) {
+                    pool.shutdown();
+                }
+            }
+        }).filter(Optional::isPresent).map(Optional::get);
     }
 
     @Override
@@ -80,4 +167,17 @@ public class MinimizeTestList extends TestPlugin {
             e.printStackTrace();
         }
     }
+
+    private static class Job {
+        private final DependentTest dt;
+        private final TestRun run;
+        // In seconds, see above.
+        private final double cost;
+
+        private Job(final DependentTest dt, final TestRun run, final double cost) {
+            this.dt = dt;
+            this.run = run;
+            this.cost = cost;
+        }
+    }
 }
@@ -1,11 +1,12 @@
 package edu.illinois.cs.dt.tools.minimizer;
 
 import com.google.gson.Gson;
-import com.reedoei.eunomia.collections.ListUtil;
 import com.reedoei.eunomia.io.IOUtil;
 import com.reedoei.eunomia.io.files.FileUtil;
 import com.reedoei.testrunner.data.results.Result;
 import com.reedoei.testrunner.runner.Runner;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
+import edu.illinois.cs.dt.tools.runner.RunnerPool;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -13,6 +14,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class MinimizeTestsResult {
     public static Path path(final String dependentTest, final Result expected, final Path outputPath) {
@@ -25,6 +31,8 @@ public class MinimizeTestsResult {
     private final Result expected;
     private final String dependentTest;
     private final List<String> deps;
+    // The search stopped early (see TestMinimizer), so the dependencies are somewhere among deps.
+    private final boolean partial;
 
     public static MinimizeTestsResult fromPath(final Path path) throws IOException {
         return new Gson().fromJson(FileUtil.readFile(path), MinimizeTestsResult.class);
@@ -35,20 +43,27 @@ public class MinimizeTestsResult {
     }
 
     public MinimizeTestsResult(final Result expected, final String dependentTest, final List<String> deps) {
+        this(expected, dependentTest, deps, false);
+    }
+
+    public MinimizeTestsResult(final Result expected, final String dependentTest, final List<String> deps,
+                               final boolean partial) {
         this.expected = expected;
         this.dependentTest = dependentTest;
         this.deps = deps;
+        this.partial = partial;
     }
 
-    private boolean isExpected(final Runner runner, final List<String> deps) {
+    /**
+     * @param observations How many runs of the order must agree for a cached result to be used. Round i
+     *                     of verification asks for i + 2, so that every round needs at least one run
+     *                     beyond the one that produced the result (as when verifying in TestRun).
+     */
+    private boolean isExpected(final Runner runner, final List<String> deps, final int observations) {
         final List<String> order = new ArrayList<>(deps);
         order.add(dependentTest());
 
-        return runner
-                .runList(order)
-                .get()
-                .results()
-                .get(dependentTest()).result().equals(expected());
+        return ResultCache.of(runner).result(runner, order, dependentTest(), observations).get().equals(expected());
     }
 
     public boolean verify(final Runner runner) throws Exception {
@@ -57,13 +72,15 @@ public class MinimizeTestsResult {
 
     public boolean verify(final Runner runner, final int verifyCount) throws Exception {
         for (int i = 0; i < verifyCount; i++) {
-            final List<List<String>> depLists = ListUtil.sample(ListUtil.subsequences(deps), MAX_SUBSEQUENCES);
+            // Seeded by the test, so that the same result is always checked the same way.
+            final List<List<String>> depLists =
+                    Subsequences.sample(deps, MAX_SUBSEQUENCES, new Random(dependentTest.hashCode() + i));
             int check = 1;
-            int totalChecks = 2 + depLists.size() - 1;
+            int totalChecks = 2 + depLists.size();
 
             IOUtil.printClearLine(String.format("[INFO] Verifying %d of %d. Running check %d of %d.", i + 1, verifyCount, check++, totalChecks));
             // Check that it's correct with the dependencies
-            if (!isExpected(runner, deps)) {
+            if (!isExpected(runner, deps, i + 2)) {
                 throw new MinimizeTestListException("Got unexpected result when running with all dependencies!");
             }
 
@@ -88,23 +105,76 @@ public class MinimizeTestsResult {
                                     final int totalChecks) throws Exception {
         IOUtil.printClearLine(String.format("[INFO] Verifying %d of %d. Running check %d of %d.", i + 1, verifyCount, check++, totalChecks));
         // Check that it's wrong without dependencies.
-        if (isExpected(runner, new ArrayList<>())) {
+        if (isExpected(runner, new ArrayList<>(), i + 2)) {
             throw new MinimizeTestListException("Got expected result even without any dependencies!");
         }
 
+        if (TestMinimizer.PARALLEL > 1) {
+            verifyConcurrently(runner, verifyCount, i, depLists, check, totalChecks);
+            return;
+        }
+
         // Check that for any subsequence that isn't the whole list, it's wrong.
         for (final List<String> depList : depLists) {
-            if (depList.equals(deps)) {
-                continue;
-            }
-
             IOUtil.printClearLine(String.format("[INFO] Verifying %d of %d. Running check %d of %d.",  i + 1, verifyCount, check++, totalChecks));
-            if (isExpected(runner, depList)) {
+            if (isExpected(runner, depList, i + 2)) {
                 throw new MinimizeTestListException("Got expected result without some dependencies! " + depList);
             }
         }
     }
 
+    /**
+     * Same as the last step of {@link #verifyDependencies}, but runs testminimizer.parallel checks at
+     * once, and stops as soon as any check fails (checks that already started still finish).
+     */
+    private void verifyConcurrently(final Runner runner,
+                                    final int verifyCount,
+                                    final int i,
+                                    final List<List<String>> depLists,
+                                    int check,
+                                    final int totalChecks) throws Exception {
+        final RunnerPool pool = new RunnerPool(runner, TestMinimizer.PARALLEL);
+        final BlockingQueue<Integer> done = new LinkedBlockingQueue<>();
+        final List<Future<Boolean>> futures = new ArrayList<>();
+
+        try {
+            for (int j = 0; j < depLists.size(); j++) {
+                final int index = j;
+                futures.add(pool.submit(r -> {
+                    try {
+                        return isExpected(r, depLists.get(index), i + 2);
+                    } finally {
+                        done.add(index);
+                    }
+                }));
+            }
+
+            for (int j = 0; j < depLists.size(); j++) {
+                final int index = done.take();
+
+                IOUtil.printClearLine(String.format("[INFO] Verifying %d of %d. Running check %d of %d.",  i + 1, verifyCount, check++, totalChecks));
+                if (expected(futures.get(index))) {
+                    futures.forEach(future -> future.cancel(false));
+                    throw new MinimizeTestListException("Got expected result without some dependencies! " + depLists.get(index));
+                }
+            }
+        } finally {
+            pool.shutdownGracefully();
+        }
+    }
+
+    private static boolean expected(final Future<Boolean> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
     @Override
     public String toString() {
         return new Gson().toJson(this);
@@ -141,6 +211,10 @@ public class MinimizeTestsResult {
         return expected;
     }
 
+    public boolean partial() {
+        return partial;
+    }
+
     public List<String> withDeps() {
         final List<String> order = new ArrayList<>(deps());
         order.add(dependentTest());
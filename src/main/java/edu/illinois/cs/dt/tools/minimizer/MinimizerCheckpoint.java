@@ -0,0 +1,184 @@
+package edu.illinois.cs.dt.tools.minimizer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The results of the probes a {@link TestMinimizer} made so far, appended to a file as they come in, so
+ * that a minimizer that gets killed (e.g., on a preempted machine) can pick up where it stopped. The
+ * search only depends on the results of its probes, so answering the same probes from the file takes
+ * it through the same candidates and dependencies as before without running anything, up to the first
+ * probe that was not saved, where it continues as usual.
+ *
+ * Orders are stored as hashes, since the probes of a long search add up to many copies of the order.
+ * Each probe also stores how long the minimizer had been running, so that time budgets span restarts.
+ */
+public class MinimizerCheckpoint {
+    public static final boolean RESUME = Configuration.config().getProperty("testminimizer.resume", true);
+
+    // Kept apart from the minimized results, since anything in that directory is read as a result.
+    public static final Path CHECKPOINTS_PATH = Paths.get("minimized-checkpoints");
+
+    public static Path path(final String dependentTest, final Result expected, final Path outputPath) {
+        return outputPath.resolve(dependentTest + "-" + expected + "-checkpoint.jsonl");
+    }
+
+    /**
+     * Reads the probes saved in the file, if it exists. If the process saving them died in the middle of
+     * writing a probe, the partial probe at the end is ignored.
+     */
+    public static MinimizerCheckpoint load(final Path path) throws IOException {
+        final MinimizerCheckpoint checkpoint = new MinimizerCheckpoint(path);
+
+        if (!Files.exists(path)) {
+            return checkpoint;
+        }
+
+        final Gson gson = new Gson();
+
+        try (final BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    final Probe probe = gson.fromJson(line, Probe.class);
+
+                    if (probe != null && probe.order != null && probe.result != null) {
+                        checkpoint.results.computeIfAbsent(probe.order, k -> new ArrayList<>()).add(probe.result);
+                        checkpoint.saved++;
+                        checkpoint.previousMs = Math.max(checkpoint.previousMs, probe.ms);
+                    }
+                } catch (JsonParseException e) {
+                    break;
+                }
+            }
+        }
+
+        return checkpoint;
+    }
+
+    private final Path path;
+    // The results seen for each order (by hash), in the order they were seen.
+    private final Map<String, List<Result>> results = new HashMap<>();
+    private int saved = 0;
+    private long previousMs = 0;
+
+    private MinimizerCheckpoint(final Path path) {
+        this.path = path;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * @return How many probes were saved when this was loaded.
+     */
+    public int saved() {
+        return saved;
+    }
+
+    /**
+     * @return How long the minimizer had been running at the last probe saved when this was loaded.
+     */
+    public long previousMs() {
+        return previousMs;
+    }
+
+    /**
+     * @return The result saved for the given observation (counting from 1) of the order, if there is one.
+     */
+    public synchronized Optional<Result> result(final List<String> order, final int observation) {
+        final List<Result> orderResults = results.get(hash(order));
+
+        if (orderResults == null || orderResults.size() < observation) {
+            return Optional.empty();
+        }
+
+        return Optional.of(orderResults.get(observation - 1));
+    }
+
+    /**
+     * Saves the result as the given observation of the order, unless it is already saved.
+     *
+     * @param ms How long the minimizer has been running, including before any restarts.
+     */
+    public synchronized void record(final List<String> order, final int observation, final Result result, final long ms) {
+        final String hash = hash(order);
+        final List<Result> orderResults = results.computeIfAbsent(hash, k -> new ArrayList<>());
+
+        if (orderResults.size() >= observation) {
+            return;
+        }
+
+        orderResults.add(result);
+
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.write(path, (new Gson().toJson(new Probe(hash, result, ms)) + System.lineSeparator()).getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String hash(final List<String> order) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (final String test : order) {
+                digest.update(test.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Probe {
+        private final String order;
+        private final Result result;
+        private final long ms;
+
+        private Probe(final String order, final Result result, final long ms) {
+            this.order = order;
+            this.result = result;
+            this.ms = ms;
+        }
+    }
+}
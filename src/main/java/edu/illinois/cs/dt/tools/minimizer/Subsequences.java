@@ -0,0 +1,60 @@
+package edu.illinois.cs.dt.tools.minimizer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Draws distinct subsequences of a list without building all 2^n of them, so that lists of any length
+ * can be sampled in time and memory proportional to the sample.
+ */
+public class Subsequences {
+    /**
+     * @return Up to count distinct subsequences of the list that are neither empty nor the whole list,
+     *         in random order (all of them, if there are at most count).
+     */
+    public static <T> List<List<T>> sample(final List<T> list, final int count, final Random random) {
+        final int n = list.size();
+        final List<List<T>> sample = new ArrayList<>();
+
+        // At most count of them, so take them all (2^n - 2 leaves out the empty and whole lists).
+        if (n < 31 && (1 << n) - 2 <= count) {
+            for (int mask = 1; mask < (1 << n) - 1; mask++) {
+                sample.add(select(list, BitSet.valueOf(new long[] {mask})));
+            }
+
+            Collections.shuffle(sample, random);
+            return sample;
+        }
+
+        final Set<BitSet> seen = new HashSet<>();
+
+        while (sample.size() < count) {
+            final BitSet included = new BitSet(n);
+            for (int i = 0; i < n; i++) {
+                included.set(i, random.nextBoolean());
+            }
+
+            final int size = included.cardinality();
+            if (size > 0 && size < n && seen.add(included)) {
+                sample.add(select(list, included));
+            }
+        }
+
+        return sample;
+    }
+
+    private static <T> List<T> select(final List<T> list, final BitSet included) {
+        final List<T> subsequence = new ArrayList<>(included.cardinality());
+
+        for (int i = included.nextSetBit(0); i >= 0; i = included.nextSetBit(i + 1)) {
+            subsequence.add(list.get(i));
+        }
+
+        return subsequence;
+    }
+}
@@ -5,29 +5,94 @@ import com.reedoei.eunomia.data.caching.FileCache;
 import com.reedoei.eunomia.io.VerbosePrinter;
 import com.reedoei.eunomia.util.RuntimeThrower;
 import com.reedoei.eunomia.util.Util;
+import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.data.results.Result;
-import com.reedoei.testrunner.data.results.TestResult;
 import com.reedoei.testrunner.runner.Runner;
-import scala.Option;
+import edu.illinois.cs.dt.tools.diagnosis.detection.Detector;
+import edu.illinois.cs.dt.tools.diagnosis.detection.FlakeRates;
+import edu.illinois.cs.dt.tools.runner.OutputRoot;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
+import edu.illinois.cs.dt.tools.runner.RunnerPool;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestMinimizer extends FileCache<MinimizeTestsResult> implements VerbosePrinter {
+    /**
+     * How to search for the dependencies of a test.
+     */
+    public enum Strategy {
+        // Halve the order while only one half gives the expected result, then try each remaining test.
+        BISECT,
+        // Delta debugging (ddmin): also finds dependencies spread over several tests in few runs.
+        DDMIN
+    }
+
+    public static final Strategy STRATEGY =
+            Strategy.valueOf(Configuration.config().getProperty("testminimizer.strategy", "bisect").toUpperCase());
+    // How many orders to run at once, each in its own JVM. With more than 1, bisection splits the order
+    // into this many parts instead of halves.
+    public static final int PARALLEL = Configuration.config().getProperty("testminimizer.parallel", 1);
+    // Rerun each probe until a sequential probability ratio test is confident in its outcome (see probe).
+    public static final boolean ADAPTIVE = Configuration.config().getProperty("testminimizer.adaptive", false);
+    // How sure to be that an order gives the expected result, and that it does not. Wrongly deciding
+    // that it does sends the search the wrong way, while the other mistake only makes it take longer.
+    public static final double ADAPTIVE_CONFIDENCE =
+            Double.parseDouble(Configuration.config().getProperty("testminimizer.adaptive.confidence", "0.99"));
+    public static final double ADAPTIVE_CONFIDENCE_OTHER =
+            Double.parseDouble(Configuration.config().getProperty("testminimizer.adaptive.confidence.other", "0.9"));
+    public static final int ADAPTIVE_MAX_RUNS = Configuration.config().getProperty("testminimizer.adaptive.max.runs", 7);
+    // The flip rate assumed before any flips are seen, worth FLIP_PRIOR_RUNS runs.
+    public static final double FLIP_RATE =
+            Double.parseDouble(Configuration.config().getProperty("testminimizer.flip.rate", "0.01"));
+    private static final int FLIP_PRIOR_RUNS = 10;
+    // Once a dependent test used this many probes or seconds (counted across restarts), its minimizer
+    // stops and writes the smallest order it found that gives the expected result. 0 means no limit.
+    public static final int BUDGET_RUNS = Configuration.config().getProperty("testminimizer.budget.runs", 0);
+    public static final int BUDGET_SECONDS = Configuration.config().getProperty("testminimizer.budget.seconds", 0);
+
     private final List<String> testOrder;
     private final String dependentTest;
     private final Result expected;
     private final Runner runner;
 
     private final int verbosity;
+    private final Strategy strategy;
     private final Path path;
 
     @Nullable
     private MinimizeTestsResult minimizedResult = null;
+    // Only while minimizing, and only if running orders in parallel.
+    @Nullable
+    private RunnerPool pool = null;
+    // How each order probed so far turned out (by the tests before the dependent test), in adaptive mode.
+    private final Map<List<String>, Observations> observations = new HashMap<>();
+    private int reruns = 0;
+    // From rerunning the original order during detection, if it was done for this module.
+    private int priorFlips = 0;
+    private int priorRuns = 0;
+    // Only while minimizing, and only if resuming is enabled.
+    @Nullable
+    private MinimizerCheckpoint checkpoint = null;
+    private final AtomicInteger probes = new AtomicInteger();
+    private final long startMs = System.currentTimeMillis();
+    // The smallest order found so far that gives the expected result, written if the budget runs out.
+    private volatile List<String> progress = new ArrayList<>();
 
     public TestMinimizer(final List<String> testOrder, final Runner runner, final String dependentTest) throws Exception {
         this(testOrder, runner, dependentTest, Paths.get(""));
@@ -39,19 +104,32 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
     }
 
     public TestMinimizer(final List<String> testOrder, final Runner runner, final String dependentTest, final Path javaAgent, int verbosity) {
+        this(testOrder, runner, dependentTest, javaAgent, verbosity, STRATEGY);
+    }
+
+    public TestMinimizer(final List<String> testOrder, final Runner runner, final String dependentTest, final Path javaAgent,
+                         int verbosity, final Strategy strategy) {
         this.testOrder = testOrder;
         this.dependentTest = dependentTest;
         this.verbosity = verbosity;
+        this.strategy = strategy;
 
         this.runner = runner;
 
         // Run in given order to determine what the result should be.
         println("[INFO] Getting expected result for: " + dependentTest);
         print("[INFO]");
-        this.expected = result(testOrder);
+        this.expected = observe(runner, testOrder, 1);
         println(" Expected: " + expected);
 
-        this.path = MinimizeTestsResult.path(dependentTest, expected, Paths.get("minimized"));
+        this.path = MinimizeTestsResult.path(dependentTest, expected, OutputRoot.resolve(runner, Paths.get("minimized")));
+
+        if (ADAPTIVE) {
+            final FlakeRates flakeRates = FlakeRates.load(OutputRoot.resolve(runner,
+                    Detector.DETECTION_RESULTS_PATH.resolve(FlakeRates.FLAKE_RATES_PATH)));
+            this.priorFlips = flakeRates.flips(dependentTest);
+            this.priorRuns = flakeRates.rounds();
+        }
     }
 
     public Result expected() {
@@ -64,16 +142,236 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
     }
 
     private Result result(final List<String> order) {
-        final List<String> actualOrder = new ArrayList<>(order);
+        return result(runner, order);
+    }
+
+    private Result result(final Runner runner, final List<String> order) {
+        return ADAPTIVE ? probe(runner, order, false) : observe(runner, order, 1);
+    }
+
+    /**
+     * @param observations How many runs of the order must agree for a cached result to be used, so
+     *                     asking for one more than were seen so far always gives a new observation.
+     */
+    private Result observe(final Runner runner, final List<String> order, final int observations) {
+        // Read once, since orders still running in parallel can finish after the checkpoint is dropped.
+        final MinimizerCheckpoint checkpoint = this.checkpoint;
+
+        if (checkpoint != null) {
+            final Optional<Result> saved = checkpoint.result(order, observations);
+
+            if (saved.isPresent()) {
+                probes.incrementAndGet();
+                return saved.get();
+            }
+        }
+
+        checkBudget(checkpoint);
+
+        final Result result = ResultCache.of(runner).result(runner, order, dependentTest, observations).get();
+        probes.incrementAndGet();
+
+        if (checkpoint != null) {
+            checkpoint.record(order, observations, result, elapsedMs(checkpoint));
+        }
+
+        return result;
+    }
+
+    private long elapsedMs(@Nullable final MinimizerCheckpoint checkpoint) {
+        return (checkpoint == null ? 0 : checkpoint.previousMs()) + System.currentTimeMillis() - startMs;
+    }
+
+    private void checkBudget(@Nullable final MinimizerCheckpoint checkpoint) {
+        if (BUDGET_RUNS > 0 && probes.get() >= BUDGET_RUNS) {
+            throw new BudgetExceededException("Used all " + BUDGET_RUNS + " runs");
+        }
+
+        if (BUDGET_SECONDS > 0 && elapsedMs(checkpoint) >= BUDGET_SECONDS * 1000L) {
+            throw new BudgetExceededException("Used all " + BUDGET_SECONDS + " seconds");
+        }
+    }
+
+    /**
+     * Records that the dependencies are among the deps and the order, which together give the expected result.
+     */
+    private void narrowedTo(final List<String> deps, final List<String> order) {
+        progress = Util.prependAll(deps, order);
+    }
+
+    /**
+     * Runs the order until a sequential probability ratio test decides whether it gives the expected
+     * result. Each run of an order either agrees with its true outcome or flips (with probability p,
+     * the flip rate), so every run that gives the expected result multiplies the likelihood ratio by
+     * (1 - p) / p, and every other run divides it by that. The test stops as soon as the ratio passes
+     * the threshold for the configured confidence either way, or after testminimizer.adaptive.max.runs
+     * runs (taking the majority).
+     *
+     * p is estimated from the flips seen so far in this minimizer (runs of an order that disagree with
+     * its majority), along with the flips seen when rerunning the original order during detection.
+     * Until there are any, a single run is enough for the default settings, so tests that never flip
+     * cost nothing extra. Earlier observations of an order are kept, so probing it again only runs it
+     * if the estimate of p has grown since.
+     *
+     * @param confirm Run the order at least once more, to check an earlier decision.
+     */
+    private Result probe(final Runner runner, final List<String> order, final boolean confirm) {
+        final Observations obs;
+        synchronized (observations) {
+            obs = observations.computeIfAbsent(prefix(order), k -> new Observations());
+        }
+
+        boolean mustRun = confirm;
+
+        while (true) {
+            final int runs;
+            synchronized (observations) {
+                runs = obs.expected + obs.other;
+
+                if (runs > 0 && !mustRun) {
+                    // Wald's thresholds for the two error rates.
+                    final double upper = Math.log(ADAPTIVE_CONFIDENCE_OTHER / (1 - ADAPTIVE_CONFIDENCE));
+                    final double lower = Math.log((1 - ADAPTIVE_CONFIDENCE_OTHER) / ADAPTIVE_CONFIDENCE);
+                    final double ratio = (obs.expected - obs.other) * flipWeight();
+
+                    if (ratio >= upper) {
+                        return expected;
+                    } else if (ratio <= lower) {
+                        return obs.otherResult;
+                    }
+                }
+
+                if (runs >= ADAPTIVE_MAX_RUNS) {
+                    return obs.expected > obs.other ? expected : obs.otherResult;
+                }
+
+                if (runs > 0) {
+                    reruns++;
+                }
+            }
+
+            final Result result = observe(runner, order, runs + 1);
+            mustRun = false;
 
-        if (!actualOrder.contains(dependentTest)) {
-            actualOrder.add(dependentTest);
+            synchronized (observations) {
+                if (result == expected) {
+                    obs.expected++;
+                } else {
+                    obs.other++;
+                    obs.otherResult = result;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The tests before the dependent test in the order, which is all its result depends on, and
+     *         what {@link ResultCache} keys it by. So e.g. [] and [dependentTest] are the same order, and
+     *         asking for one more observation than were counted for it gets a new one.
+     */
+    private List<String> prefix(final List<String> order) {
+        final int i = order.indexOf(dependentTest);
+        return new ArrayList<>(i < 0 ? order : order.subList(0, i));
+    }
+
+    /**
+     * @return log((1 - p) / p), for the flip rate p estimated from all observations so far.
+     */
+    private double flipWeight() {
+        int runs = priorRuns;
+        int flips = priorFlips;
+
+        // Cancelled probes that already started may still be adding observations.
+        synchronized (observations) {
+            for (final Observations obs : observations.values()) {
+                runs += obs.expected + obs.other;
+                flips += Math.min(obs.expected, obs.other);
+            }
         }
 
-        return runner.runList(actualOrder)
-                .flatMap(r -> Option.apply(r.results().get(dependentTest)))
-                .map(TestResult::result)
-                .get();
+        final double p = (flips + FLIP_RATE * FLIP_PRIOR_RUNS) / (runs + FLIP_PRIOR_RUNS);
+        return Math.log((1 - p) / p);
+    }
+
+    /**
+     * In adaptive mode, checks that the order still gives the expected result when run again. Used to
+     * find out whether a later probe contradicts an earlier decision because of a flip, and before
+     * settling on a single dependency (or none), since nothing later would contradict that.
+     */
+    private boolean confirmed(final List<String> order) {
+        return !ADAPTIVE || probe(runner, order, true) == expected;
+    }
+
+    /**
+     * @return The index of the first order that gives the expected result, or -1 if none does. In
+     *         parallel mode, the orders run concurrently, and once one gives the expected result, the
+     *         orders after it that have not started yet are cancelled (orders already running finish in
+     *         the background, and their results are still cached). The orders before it still have to
+     *         finish, so the answer is the same as when running them one at a time.
+     */
+    private int firstExpected(final List<List<String>> orders) throws InterruptedException {
+        if (pool == null) {
+            for (int i = 0; i < orders.size(); i++) {
+                if (result(orders.get(i)) == expected) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        final BlockingQueue<Integer> done = new LinkedBlockingQueue<>();
+        final List<Future<Result>> futures = new ArrayList<>();
+
+        for (int i = 0; i < orders.size(); i++) {
+            final int index = i;
+            futures.add(pool.submit(r -> {
+                try {
+                    return result(r, orders.get(index));
+                } finally {
+                    done.add(index);
+                }
+            }));
+        }
+
+        final boolean[] finished = new boolean[orders.size()];
+        int first = orders.size();
+        int waiting = orders.size();
+
+        while (waiting > 0) {
+            final int i = done.take();
+            finished[i] = true;
+
+            if (i < first) {
+                waiting--;
+
+                if (resultOf(futures.get(i)) == expected) {
+                    for (int j = i + 1; j < first; j++) {
+                        futures.get(j).cancel(false);
+
+                        if (!finished[j]) {
+                            waiting--;
+                        }
+                    }
+
+                    first = i;
+                }
+            }
+        }
+
+        return first < orders.size() ? first : -1;
+    }
+
+    private static Result resultOf(final Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuntimeException(e.getCause());
+        }
     }
 
     private MinimizeTestsResult run() throws Exception {
@@ -83,13 +381,72 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
             final List<String> order =
                     testOrder.contains(dependentTest) ? ListUtil.beforeInc(testOrder, dependentTest) : new ArrayList<>(testOrder);
 
-            minimizedResult = new MinimizeTestsResult(expected, dependentTest, run(order));
-            minimizedResult.verify(runner);
+            if (PARALLEL > 1) {
+                pool = new RunnerPool(runner, PARALLEL);
+            }
+
+            if (MinimizerCheckpoint.RESUME) {
+                checkpoint = loadCheckpoint();
+            }
+
+            narrowedTo(Collections.emptyList(), order);
+
+            try {
+                minimizedResult = new MinimizeTestsResult(expected, dependentTest, run(order));
+
+                if (ADAPTIVE) {
+                    synchronized (observations) {
+                        println("[INFO] Reran probes " + reruns + " times, estimated flip rate: " +
+                                String.format("%.3f", 1 / (1 + Math.exp(flipWeight()))));
+                    }
+                }
+            } catch (BudgetExceededException e) {
+                println();
+                System.out.println("[WARNING] " + e.getMessage() + " for " + dependentTest +
+                        ", writing the " + progress.size() + " tests it was narrowed down to as a partial result.");
+                minimizedResult = new MinimizeTestsResult(expected, dependentTest, new ArrayList<>(progress), true);
+            } finally {
+                if (pool != null) {
+                    pool.shutdownGracefully();
+                    pool = null;
+                }
+            }
+
+            // A partial result is not minimal, so it would fail verification. Its checkpoint is kept, so
+            // removing the result and raising the budget continues the search.
+            if (!minimizedResult.partial()) {
+                minimizedResult.verify(runner);
+
+                if (checkpoint != null) {
+                    checkpoint.delete();
+                }
+            }
+
+            checkpoint = null;
         }
 
         return minimizedResult;
     }
 
+    @Nullable
+    private MinimizerCheckpoint loadCheckpoint() {
+        final Path checkpointPath = MinimizerCheckpoint.path(dependentTest, expected,
+                OutputRoot.resolve(runner, MinimizerCheckpoint.CHECKPOINTS_PATH));
+
+        try {
+            final MinimizerCheckpoint loaded = MinimizerCheckpoint.load(checkpointPath);
+
+            if (loaded.saved() > 0) {
+                System.out.println("[INFO] Resuming from " + loaded.saved() + " probes saved in " + checkpointPath);
+            }
+
+            return loaded;
+        } catch (IOException e) {
+            System.out.println("[WARNING] Could not read checkpoint from " + checkpointPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     private List<String> run(List<String> order) throws Exception {
         final List<String> deps = new ArrayList<>();
 
@@ -98,14 +455,46 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
             return deps;
         }
 
+        if (strategy == Strategy.DDMIN) {
+            return runDdmin(order);
+        }
+
         println("[INFO] Trying dts as isolated dependencies.");
         if (tryIsolated(deps, order)) {
             return deps;
         }
 
         final int origSize = order.size();
+        // The orders that each decision so far narrowed down from, the latest on top.
+        final Deque<List<String>> decisions = new ArrayDeque<>();
 
         while (order.size() > 1) {
+            narrowedTo(deps, order);
+
+            if (pool != null) {
+                final List<List<String>> parts = split(order, Math.min(PARALLEL, order.size()));
+                print("\r\033[2K[INFO] Trying " + parts.size() + " parts at once, " + order.size() + " dts remaining.");
+
+                final List<List<String>> orders = new ArrayList<>();
+                parts.forEach(part -> orders.add(Util.prependAll(deps, part)));
+
+                final int i = firstExpected(orders);
+                if (i < 0) {
+                    if (!decisions.isEmpty() && !confirmed(Util.prependAll(deps, order))) {
+                        order = backtrack(decisions);
+                        continue;
+                    }
+
+                    println();
+                    // The dependencies are spread over several parts.
+                    return runSequential(deps, order);
+                }
+
+                decisions.push(order);
+                order = parts.get(i);
+                continue;
+            }
+
             print("\r\033[2K[INFO] Trying both halves, " + order.size() + " dts remaining.");
 
             final Result topResult = result(Util.prependAll(deps, Util.topHalf(order)));
@@ -115,9 +504,13 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
             print(", Bottom result: " + botResult);
 
             if (topResult == expected && botResult != expected) {
+                decisions.push(order);
                 order = Util.topHalf(order);
             } else if (topResult != expected && botResult == expected) {
+                decisions.push(order);
                 order = Util.botHalf(order);
+            } else if (!decisions.isEmpty() && !confirmed(Util.prependAll(deps, order))) {
+                order = backtrack(decisions);
             } else {
                 println();
                 // It's not 100% obvious what to do in this case (could have weird dependencies that are hard to deal with).
@@ -145,18 +538,57 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
         return deps;
     }
 
-    private boolean tryIsolated(final List<String> deps, final List<String> order) {
+    /**
+     * The order chosen last does not give the expected result after all, so the decision to narrow
+     * down to it was based on a flip. Goes back to the order it was narrowed down from, whose halves
+     * are then probed again (with more runs, now that a flip was seen).
+     */
+    private List<String> backtrack(final Deque<List<String>> decisions) {
+        println();
+        println("[INFO] Got a different result than when narrowing down to these tests, backtracking.");
+        return decisions.pop();
+    }
+
+    private boolean tryIsolated(final List<String> deps, final List<String> order) throws InterruptedException {
         print("[INFO] Trying dependent test '" + dependentTest + "' in isolation.");
         final Result isolated = result(Collections.singletonList(dependentTest));
         println();
 
         // TODO: Move to another method probably.
-        if (isolated == expected) {
+        if (isolated == expected && confirmed(Collections.singletonList(dependentTest))) {
             deps.clear();
             println("[INFO] Test has expected result in isolation.");
             return true;
         }
 
+        if (pool != null) {
+            print("[INFO] Running " + order.size() + " tests, " + PARALLEL + " at a time.");
+
+            final List<List<String>> orders = new ArrayList<>();
+            order.forEach(test -> orders.add(Collections.singletonList(test)));
+
+            int start = 0;
+            while (start < orders.size()) {
+                final int i = start + firstExpected(orders.subList(start, orders.size()));
+
+                if (i < start) {
+                    break;
+                }
+
+                if (confirmed(orders.get(i))) {
+                    println();
+                    println("[INFO] Found dependency: " + order.get(i));
+                    deps.add(order.get(i));
+                    return true;
+                }
+
+                start = i + 1;
+            }
+
+            println();
+            return false;
+        }
+
         for (int i = 0; i < order.size(); i++) {
             String test = order.get(i);
 
@@ -165,7 +597,7 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
 
             // Found an order where we get the expected result with just one test, can't be more
             // minimal than this.
-            if (r == expected) {
+            if (r == expected && confirmed(Collections.singletonList(test))) {
                 println();
                 println("[INFO] Found dependency: " + test);
                 deps.add(test);
@@ -180,6 +612,7 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
         final List<String> remainingTests = new ArrayList<>(testOrder);
 
         while (!remainingTests.isEmpty()) {
+            narrowedTo(deps, remainingTests);
             print(String.format("\r\033[2K[INFO] Running sequentially, %d tests left", remainingTests.size()));
             final String current = remainingTests.remove(0);
 
@@ -199,6 +632,107 @@ public class TestMinimizer extends FileCache<MinimizeTestsResult> implements Ver
         return deps;
     }
 
+    /**
+     * Finds a 1-minimal set of dependencies (removing any single one loses the expected result) using
+     * delta debugging: split the candidates into n parts and keep any part, or the complement of any
+     * part, that still gives the expected result, otherwise double n. A single polluter takes about
+     * 2 log(n) runs, and polluters that only work together are found without trying each test alone.
+     */
+    private List<String> runDdmin(final List<String> order) throws MinimizeTestListException, InterruptedException {
+        print("[INFO] Trying dependent test '" + dependentTest + "' in isolation.");
+        final Result isolated = result(Collections.singletonList(dependentTest));
+        println();
+
+        if (isolated == expected) {
+            println("[INFO] Test has expected result in isolation.");
+            return new ArrayList<>();
+        }
+
+        List<String> candidates = order;
+        int n = 2;
+
+        while (candidates.size() >= 2) {
+            narrowedTo(Collections.emptyList(), candidates);
+            print(String.format("\r\033[2K[INFO] Running ddmin, %d tests remaining in %d parts.", candidates.size(), n));
+
+            final List<List<String>> parts = split(candidates, n);
+            List<String> reduced = null;
+            int nextN = n;
+
+            final int part = firstExpected(parts);
+            if (part >= 0) {
+                reduced = parts.get(part);
+                nextN = 2;
+            }
+
+            // With two parts, each complement is the other part, which was just tried.
+            if (reduced == null && n > 2) {
+                final List<List<String>> complements = new ArrayList<>();
+                for (final List<String> p : parts) {
+                    final List<String> complement = new ArrayList<>(candidates);
+                    complement.removeAll(p);
+                    complements.add(complement);
+                }
+
+                final int complement = firstExpected(complements);
+                if (complement >= 0) {
+                    reduced = complements.get(complement);
+                    nextN = n - 1;
+                }
+            }
+
+            if (reduced != null) {
+                candidates = reduced;
+                n = Math.max(2, Math.min(nextN, candidates.size()));
+            } else if (n < candidates.size()) {
+                n = Math.min(2 * n, candidates.size());
+            } else {
+                break;
+            }
+        }
+
+        println();
+
+        print("[INFO] ");
+        final Result orderResult = result(candidates);
+        if (orderResult != expected) {
+            throw new MinimizeTestListException("Could not find dependencies. The result with the remaining tests '" +
+                    orderResult + "' does not match expected '" + expected + "'");
+        }
+
+        println(" Found " + candidates.size() + " dependencies: " + candidates);
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * @return The tests split into n contiguous parts of (nearly) equal size, keeping their order.
+     */
+    private static List<List<String>> split(final List<String> tests, final int n) {
+        final List<List<String>> parts = new ArrayList<>();
+
+        int start = 0;
+        for (int i = 0; i < n; i++) {
+            final int end = start + (tests.size() - start) / (n - i);
+            parts.add(new ArrayList<>(tests.subList(start, end)));
+            start = end;
+        }
+
+        return parts;
+    }
+
+    private static class BudgetExceededException extends RuntimeException {
+        private BudgetExceededException(final String message) {
+            super(message);
+        }
+    }
+
+    private static class Observations {
+        private int expected = 0;
+        private int other = 0;
+        // The result of the latest run that did not give the expected result.
+        private Result otherResult = null;
+    }
+
     public String getDependentTest() {
         return dependentTest;
     }
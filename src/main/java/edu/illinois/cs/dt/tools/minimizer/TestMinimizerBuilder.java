@@ -13,6 +13,7 @@ public class TestMinimizerBuilder {
     private Runner runner;
     private final Path javaAgent;
     private final int verbosity;
+    private final TestMinimizer.Strategy strategy;
 
     public TestMinimizerBuilder(final Runner runner) {
         this.runner = runner;
@@ -21,39 +22,45 @@ public class TestMinimizerBuilder {
         dependentTest = "";
         javaAgent = Paths.get("");
         verbosity = 0;
+        strategy = TestMinimizer.STRATEGY;
     }
 
     public TestMinimizerBuilder(final List<String> testOrder, final String dependentTest,
                                 final Runner runner, final Path javaAgent,
-                                final int verbosity) {
+                                final int verbosity, final TestMinimizer.Strategy strategy) {
         this.testOrder = testOrder;
         this.dependentTest = dependentTest;
         this.runner = runner;
         this.javaAgent = javaAgent;
         this.verbosity = verbosity;
+        this.strategy = strategy;
     }
 
     public TestMinimizerBuilder testOrder(final List<String> testOrder) {
-        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity);
+        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity, strategy);
     }
 
     public TestMinimizerBuilder dependentTest(final String dependentTest) {
-        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity);
+        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity, strategy);
     }
 
     public TestMinimizerBuilder runner(final Runner runner) {
-        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity);
+        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity, strategy);
     }
 
     public TestMinimizerBuilder javaAgent(final Path javaAgent) {
-        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity);
+        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity, strategy);
     }
 
     public TestMinimizerBuilder verbosity(final int verbosity) {
-        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity);
+        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity, strategy);
+    }
+
+    public TestMinimizerBuilder strategy(final TestMinimizer.Strategy strategy) {
+        return new TestMinimizerBuilder(testOrder, dependentTest, runner, javaAgent, verbosity, strategy);
     }
 
     public TestMinimizer build() throws Exception {
-        return new TestMinimizer(testOrder, runner, dependentTest, javaAgent, verbosity);
+        return new TestMinimizer(testOrder, runner, dependentTest, javaAgent, verbosity, strategy);
     }
 }
\ No newline at end of file
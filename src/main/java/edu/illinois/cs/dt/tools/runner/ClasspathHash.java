@@ -0,0 +1,95 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.testrunner.util.MavenClassLoader;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A hash of the code on a classpath, to tell whether something saved from an earlier run (e.g., results
+ * or instrumented classes) still belongs to the code as it is now. Class directories are hashed by the
+ * contents of their files, since they change with every build. Jars are hashed by path, size and
+ * modification time, which change whenever a dependency is rebuilt or another version is used.
+ */
+public class ClasspathHash {
+    /**
+     * @return The hash of the module's class directories and its test classpath.
+     */
+    public static Optional<String> of(final MavenProject project) {
+        final Set<String> classpath = new LinkedHashSet<>();
+        classpath.add(project.getBuild().getOutputDirectory());
+        classpath.add(project.getBuild().getTestOutputDirectory());
+        classpath.add(new MavenClassLoader(project).classpath());
+
+        return of(String.join(File.pathSeparator, classpath));
+    }
+
+    /**
+     * @return The hash of the elements of the classpath, or empty if some element could not be read.
+     */
+    public static Optional<String> of(final String classpath) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[8192];
+
+            final Set<Path> elements = new LinkedHashSet<>();
+            for (final String element : classpath.split(File.pathSeparator)) {
+                if (!element.isEmpty()) {
+                    elements.add(Paths.get(element).toAbsolutePath());
+                }
+            }
+
+            for (final Path element : elements) {
+                update(digest, element.toString());
+
+                if (Files.isDirectory(element)) {
+                    final List<Path> files;
+                    try (final Stream<Path> walk = Files.walk(element)) {
+                        files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                    }
+
+                    for (final Path file : files) {
+                        update(digest, element.relativize(file).toString());
+                        try (final InputStream in = Files.newInputStream(file)) {
+                            int read;
+                            while ((read = in.read(buffer)) > 0) {
+                                digest.update(buffer, 0, read);
+                            }
+                        }
+                    }
+                } else if (Files.isRegularFile(element)) {
+                    update(digest, Files.size(element) + ":" + Files.getLastModifiedTime(element).toMillis());
+                }
+            }
+
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return Optional.of(hex.toString());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            System.out.println("[WARNING] Could not hash the classpath: " + e);
+            return Optional.empty();
+        }
+    }
+
+    private static void update(final MessageDigest digest, final String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+}
@@ -0,0 +1,168 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs an order of JUnit 4 tests for {@link InJvmRunner}. The tool's own class loader never loads this
+ * class: InJvmRunner defines it in the class loader of each order, so that it uses the JUnit on the
+ * module's test classpath. So it may only use JUnit and the JDK, and only JDK types may cross over.
+ */
+public class InJvmJUnit {
+    /**
+     * Runs the tests in the order. Consecutive tests from the same class run as one request, so the
+     * class-level fixtures (e.g., @BeforeClass) run once around them, as in a forked run.
+     *
+     * @param classNames The class of each test in the order.
+     * @return For each test, its result ("PASS", "FAILURE", "ERROR" or "SKIPPED"), its time in seconds
+     *         and its stack trace. Null if some test did not run on its own (e.g., a class-level fixture
+     *         failed, or the name does not match a test method), in which case the order has to be forked.
+     */
+    public static Map<String, Object[]> run(final List<String> order, final List<String> classNames)
+            throws ClassNotFoundException {
+        final Map<String, Object[]> results = new HashMap<>();
+        final Listener listener = new Listener(results);
+
+        final JUnitCore core = new JUnitCore();
+        core.addListener(listener);
+
+        int start = 0;
+        while (start < order.size()) {
+            final String className = classNames.get(start);
+            // Method names to test names, in the order to run them.
+            final Map<String, String> methods = new LinkedHashMap<>();
+
+            int end = start;
+            while (end < order.size() && classNames.get(end).equals(className) &&
+                    !methods.containsKey(methodName(order.get(end), className))) {
+                methods.put(methodName(order.get(end), className), order.get(end));
+                end++;
+            }
+
+            listener.methods = methods;
+            core.run(request(Class.forName(className, false, InJvmJUnit.class.getClassLoader()), methods));
+
+            if (listener.broken) {
+                return null;
+            }
+
+            start = end;
+        }
+
+        return results.keySet().containsAll(order) ? results : null;
+    }
+
+    private static String methodName(final String test, final String className) {
+        return test.substring(className.length() + 1);
+    }
+
+    private static Request request(final Class<?> testClass, final Map<String, String> methods) {
+        final List<String> names = new ArrayList<>(methods.keySet());
+
+        return Request.aClass(testClass)
+                .filterWith(new Filter() {
+                    @Override
+                    public boolean shouldRun(final Description description) {
+                        if (description.isTest()) {
+                            return methods.containsKey(description.getMethodName());
+                        }
+
+                        return description.getChildren().stream().anyMatch(this::shouldRun);
+                    }
+
+                    @Override
+                    public String describe() {
+                        return "methods " + names;
+                    }
+                })
+                .sortWith((a, b) -> Integer.compare(position(names, a), position(names, b)));
+    }
+
+    private static int position(final List<String> names, final Description description) {
+        if (description.isTest()) {
+            final int i = names.indexOf(description.getMethodName());
+            return i < 0 ? Integer.MAX_VALUE : i;
+        }
+
+        return description.getChildren().stream().mapToInt(d -> position(names, d)).min().orElse(Integer.MAX_VALUE);
+    }
+
+    private static class Listener extends RunListener {
+        private final Map<String, Object[]> results;
+        private Map<String, String> methods = new HashMap<>();
+        private boolean broken = false;
+        private long startNanos = 0;
+
+        private Listener(final Map<String, Object[]> results) {
+            this.results = results;
+        }
+
+        private String test(final Description description) {
+            return description.getMethodName() == null ? null : methods.get(description.getMethodName());
+        }
+
+        @Override
+        public void testStarted(final Description description) {
+            startNanos = System.nanoTime();
+        }
+
+        @Override
+        public void testFinished(final Description description) {
+            final String test = test(description);
+
+            if (test != null) {
+                final double time = (System.nanoTime() - startNanos) / 1e9;
+                final Object[] result = results.get(test);
+
+                if (result == null) {
+                    results.put(test, new Object[] {"PASS", time, new StackTraceElement[0]});
+                } else {
+                    result[1] = time;
+                }
+            }
+        }
+
+        @Override
+        public void testFailure(final Failure failure) {
+            final String test = test(failure.getDescription());
+
+            if (test == null) {
+                // The class itself failed (e.g., in @BeforeClass, or no method matched).
+                broken = true;
+                return;
+            }
+
+            final Throwable exception = failure.getException();
+            results.put(test, new Object[] {exception instanceof AssertionError ? "FAILURE" : "ERROR", 0.0,
+                    exception.getStackTrace()});
+        }
+
+        @Override
+        public void testAssumptionFailure(final Failure failure) {
+            final String test = test(failure.getDescription());
+
+            if (test != null) {
+                results.put(test, new Object[] {"SKIPPED", 0.0, new StackTraceElement[0]});
+            }
+        }
+
+        @Override
+        public void testIgnored(final Description description) {
+            final String test = test(description);
+
+            if (test != null) {
+                results.put(test, new Object[] {"SKIPPED", 0.0, new StackTraceElement[0]});
+            }
+        }
+    }
+}
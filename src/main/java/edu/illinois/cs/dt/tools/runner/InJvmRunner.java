@@ -0,0 +1,333 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
+import com.reedoei.testrunner.data.results.TestResult;
+import com.reedoei.testrunner.data.results.TestRunResult;
+import com.reedoei.testrunner.runner.Runner;
+import com.reedoei.testrunner.util.MavenClassLoader;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Runs short orders inside this JVM instead of forking one, which saves the JVM startup and classpath
+ * scanning that dominate tiny runs (a test alone, or a few dependencies and the dependent test).
+ * Each order gets a fresh class loader over the module's test classpath, so every static field starts
+ * from its initial value, just as in a new JVM. JUnit itself is loaded from that classpath, and the
+ * tests are run by {@link InJvmJUnit}, which is defined in the same class loader. Consecutive tests of
+ * the same class run as one request, so class-level fixtures run once around them, as in a forked run.
+ *
+ * Only one order runs in this JVM at a time, and whenever that is not possible, the order is forked
+ * as usual. This happens when:
+ *
+ * - dt.runner.injvm is off, or the order has more than dt.runner.injvm.max.tests tests.
+ * - The watchdog is on (dt.timeout.test or dt.timeout.order), since a hanging test in this JVM could
+ *   not be stopped.
+ * - Another order is already running in this JVM (e.g., with several workers, or a hanging test).
+ * - JUnit or one of the test classes cannot be loaded, or a test does not run on its own (e.g., a
+ *   class-level fixture fails).
+ * - A test in the order was seen to change JVM-global state: system properties, the default locale or
+ *   time zone, the standard streams, or the security manager, or it called System.exit. The state is
+ *   restored, the result is thrown away, and the order (and every later order with one of its tests)
+ *   is forked instead, since such tests can affect each other even across class loaders.
+ * - System.exit cannot be intercepted, which needs a security manager (not allowed by default since
+ *   Java 18).
+ *
+ */
+public class InJvmRunner {
+    public static final boolean ENABLED = Configuration.config().getProperty("dt.runner.injvm", false);
+    // Longer orders are forked, since JVM startup matters less for them.
+    public static final int MAX_TESTS = Configuration.config().getProperty("dt.runner.injvm.max.tests", 10);
+
+    // Not referenced directly, since the tool's own class loader must not load it (see InJvmJUnit).
+    private static final String JUNIT_RUNNER = "edu.illinois.cs.dt.tools.runner.InJvmJUnit";
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Map<String, URL[]> CLASSPATHS = new ConcurrentHashMap<>();
+    private static final Set<String> FORK_ONLY = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private static volatile boolean exitGuardFailed = false;
+
+    /**
+     * @return The result of running the order in this JVM, or empty if it has to be forked (see above).
+     */
+    public static Optional<TestRunResult> runList(final Runner runner, final List<String> order) {
+        if (!ENABLED || Watchdog.enabled() || exitGuardFailed || order.isEmpty() || order.size() > MAX_TESTS ||
+                order.stream().anyMatch(FORK_ONLY::contains)) {
+            return Optional.empty();
+        }
+
+        if (!LOCK.tryLock()) {
+            return Optional.empty();
+        }
+
+        try {
+            return runLocked(runner, order);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static Optional<TestRunResult> runLocked(final Runner runner, final List<String> order) {
+        final URL[] classpath = CLASSPATHS.computeIfAbsent(
+                runner.project().getBasedir().toPath().toAbsolutePath().toString(),
+                k -> urls(new MavenClassLoader(runner.project()).classpath()));
+
+        final GlobalState before = new GlobalState();
+        final ExitGuard guard = new ExitGuard();
+
+        try {
+            System.setSecurityManager(guard);
+        } catch (SecurityException | UnsupportedOperationException e) {
+            exitGuardFailed = true;
+            System.out.println("[WARNING] Cannot intercept System.exit (" + e + "), forking a JVM for every order.");
+            return Optional.empty();
+        }
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextLoader = thread.getContextClassLoader();
+
+        try (final URLClassLoader loader = new OrderClassLoader(classpath)) {
+            thread.setContextClassLoader(loader);
+
+            final Optional<Map<String, TestResult>> results = runJUnit(loader, order);
+
+            if (guard.globalChange || !before.equals(new GlobalState())) {
+                System.out.println("[INFO] Tests in " + order + " change JVM-global state, forking a JVM for them from now on.");
+                FORK_ONLY.addAll(order);
+                return Optional.empty();
+            }
+
+            return results.map(r -> new TestRunResult(UUID.randomUUID().toString(), order, r));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        } finally {
+            thread.setContextClassLoader(contextLoader);
+            guard.uninstall();
+            before.restore();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<Map<String, TestResult>> runJUnit(final ClassLoader loader, final List<String> order) {
+        try {
+            final Method run = Class.forName(JUNIT_RUNNER, true, loader).getMethod("run", List.class, List.class);
+            final List<String> classNames = order.stream().map(InJvmRunner::className).collect(Collectors.toList());
+
+            final Map<String, Object[]> junitResults = (Map<String, Object[]>) run.invoke(null, order, classNames);
+
+            // Some test did not run on its own, so let the runner handle the order.
+            if (junitResults == null) {
+                return Optional.empty();
+            }
+
+            final Map<String, TestResult> results = new HashMap<>();
+            junitResults.forEach((test, r) -> results.put(test,
+                    new TestResult(test, Result.valueOf((String) r[0]), (double) r[1], (StackTraceElement[]) r[2])));
+
+            return Optional.of(results);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof ClassNotFoundException || e.getCause() instanceof NoClassDefFoundError) {
+                return forkFromNowOn(order, e.getCause());
+            }
+
+            e.getCause().printStackTrace();
+            return Optional.empty();
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            return forkFromNowOn(order, e);
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Map<String, TestResult>> forkFromNowOn(final List<String> order, final Throwable cause) {
+        System.out.println("[WARNING] Cannot run " + order + " in this JVM (" + cause + "), forking a JVM for them from now on.");
+        FORK_ONLY.addAll(order);
+        return Optional.empty();
+    }
+
+    // Same as RandomClassDetector.className, but without depending on the detection package.
+    private static String className(final String test) {
+        final int paramStart = test.indexOf('[');
+        final String name = paramStart >= 0 ? test.substring(0, paramStart) : test;
+        final int i = name.lastIndexOf('.');
+
+        return i >= 0 ? name.substring(0, i) : name;
+    }
+
+    private static URL[] urls(final String classpath) {
+        final List<URL> urls = new ArrayList<>();
+
+        for (final String entry : classpath.split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            try {
+                if (entry.endsWith("*")) {
+                    final Path dir = Paths.get(entry.substring(0, entry.length() - 1));
+
+                    if (Files.isDirectory(dir)) {
+                        try (final DirectoryStream<Path> jars = Files.newDirectoryStream(dir, "*.jar")) {
+                            for (final Path jar : jars) {
+                                urls.add(jar.toUri().toURL());
+                            }
+                        }
+                    }
+                } else {
+                    urls.add(Paths.get(entry).toUri().toURL());
+                }
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException(e);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return urls.toArray(new URL[0]);
+    }
+
+    /**
+     * The module's test classpath, plus {@link InJvmJUnit}, which is defined here from the tool's own
+     * class files so that it links against the module's JUnit.
+     */
+    private static class OrderClassLoader extends URLClassLoader {
+        private OrderClassLoader(final URL[] classpath) {
+            super(classpath, ClassLoader.getSystemClassLoader().getParent());
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            if (!name.equals(JUNIT_RUNNER) && !name.startsWith(JUNIT_RUNNER + "$")) {
+                return super.findClass(name);
+            }
+
+            try (final InputStream in = InJvmRunner.class.getClassLoader().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                if (in == null) {
+                    throw new ClassNotFoundException(name);
+                }
+
+                final byte[] bytes = IOUtils.toByteArray(in);
+                return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    /**
+     * The parts of the JVM's state that tests commonly change and that every class loader shares.
+     */
+    private static class GlobalState {
+        // The first call to TimeZone.getDefault() sets user.timezone, so it must come before the properties.
+        private final Locale locale = Locale.getDefault();
+        private final TimeZone timeZone = TimeZone.getDefault();
+        private final Properties properties = (Properties) System.getProperties().clone();
+        private final InputStream in = System.in;
+        private final PrintStream out = System.out;
+        private final PrintStream err = System.err;
+
+        // Only puts back what changed, so that nothing is touched after a run that left the state alone.
+        private void restore() {
+            if (!properties.equals(System.getProperties())) {
+                System.setProperties(properties);
+            }
+            if (!locale.equals(Locale.getDefault())) {
+                Locale.setDefault(locale);
+            }
+            if (!timeZone.equals(TimeZone.getDefault())) {
+                TimeZone.setDefault(timeZone);
+            }
+            if (in != System.in) {
+                System.setIn(in);
+            }
+            if (out != System.out) {
+                System.setOut(out);
+            }
+            if (err != System.err) {
+                System.setErr(err);
+            }
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof GlobalState)) {
+                return false;
+            }
+
+            final GlobalState state = (GlobalState) o;
+            return properties.equals(state.properties) && locale.equals(state.locale) &&
+                    timeZone.equals(state.timeZone) && in == state.in && out == state.out && err == state.err;
+        }
+
+        @Override
+        public int hashCode() {
+            return properties.hashCode();
+        }
+    }
+
+    /**
+     * Turns System.exit into an exception (which fails the test) and allows everything else.
+     * Replacing it with another security manager counts as changing global state.
+     */
+    private static class ExitGuard extends SecurityManager {
+        private final SecurityManager previous = System.getSecurityManager();
+        private volatile boolean globalChange = false;
+        private volatile boolean installed = true;
+
+        @Override
+        public void checkExit(final int status) {
+            if (installed) {
+                globalChange = true;
+                throw new SecurityException("System.exit(" + status + ") called by a test running in the same JVM as the tool");
+            }
+        }
+
+        @Override
+        public void checkPermission(final Permission perm) {
+            if (installed && "setSecurityManager".equals(perm.getName())) {
+                globalChange = true;
+            }
+        }
+
+        @Override
+        public void checkPermission(final Permission perm, final Object context) {
+            checkPermission(perm);
+        }
+
+        private void uninstall() {
+            installed = false;
+            System.setSecurityManager(previous);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.testrunner.runner.Runner;
+import org.apache.maven.project.MavenProject;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The directory that a module's outputs (detection results, minimized tests, timeouts) are written
+ * under. By default this is the working directory for every module, which is fine when modules are
+ * processed one at a time. When several modules are processed concurrently, each gets its own root.
+ */
+public class OutputRoot {
+    private static final Map<String, Path> ROOTS = new ConcurrentHashMap<>();
+
+    private static String key(final MavenProject project) {
+        return project.getBasedir().toPath().toAbsolutePath().toString();
+    }
+
+    public static void set(final MavenProject project, final Path root) {
+        ROOTS.put(key(project), root);
+    }
+
+    public static Path of(final MavenProject project) {
+        return ROOTS.getOrDefault(key(project), Paths.get(""));
+    }
+
+    public static Path resolve(final MavenProject project, final Path path) {
+        return of(project).resolve(path);
+    }
+
+    public static Path resolve(final Runner runner, final Path path) {
+        return resolve(runner.project(), path);
+    }
+}
@@ -0,0 +1,346 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.google.gson.Gson;
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
+import com.reedoei.testrunner.data.results.TestResult;
+import com.reedoei.testrunner.data.results.TestRunResult;
+import com.reedoei.testrunner.runner.Runner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the result of every test in every order that was run, keyed by the test and a hash of
+ * the tests that ran before it. A run of [t1, ..., tn] gives the result of each ti after t1, ..., ti-1,
+ * so later runs of any of those prefixes (plus the test) can be answered without running anything.
+ *
+ * Each entry counts how many runs agreed on the result. Callers that need repeated observations (e.g.,
+ * to verify a result) ask for more of them, and an entry whose runs disagreed is never used. Results of
+ * flaky tests can also be left out of lookups entirely. The least recently used entries are evicted
+ * once the cache is full.
+ *
+ * A cache saved to disk starts with a hash of the module's compiled classes and of its dependencies.
+ * Results from other code are meaningless, so a saved cache whose hash does not match is discarded.
+ */
+public class ResultCache {
+    public static final boolean ENABLED = Configuration.config().getProperty("dt.cache", true);
+    public static final int MAX_ENTRIES = Configuration.config().getProperty("dt.cache.size", 200000);
+    public static final boolean BYPASS_FLAKY = Configuration.config().getProperty("dt.cache.bypass.flaky", true);
+    // Relative to the module's base directory. Empty means the cache is only kept in memory.
+    public static final String CACHE_PATH = Configuration.config().getProperty("dt.cache.path", "");
+
+    private static final Map<String, ResultCache> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * @return The cache shared by all runners for the same module.
+     */
+    public static ResultCache of(final Runner runner) {
+        final Path basedir = runner.project().getBasedir().toPath().toAbsolutePath();
+
+        return CACHES.computeIfAbsent(basedir.toString(), k -> {
+            return CACHE_PATH.isEmpty() ?
+                    new ResultCache(null, null) :
+                    new ResultCache(basedir.resolve(CACHE_PATH), ClasspathHash.of(runner.project()).orElse(null));
+        });
+    }
+
+    private final Path path;
+    // The hash of the classpath the results were recorded with (see ClasspathHash).
+    private final String classpathHash;
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Set<String> flaky = new HashSet<>();
+
+    private int hits = 0;
+    private int misses = 0;
+
+    private ResultCache(final Path path, final String classpathHash) {
+        this.path = classpathHash == null ? null : path;
+        this.classpathHash = classpathHash;
+
+        if (this.path != null) {
+            load();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::save));
+        }
+    }
+
+    /**
+     * Tests marked as flaky are never answered from the cache (if dt.cache.bypass.flaky is set). This
+     * includes every test that any of the module's runners has seen flip.
+     */
+    public synchronized void markFlaky(final Collection<String> tests) {
+        flaky.addAll(tests);
+    }
+
+    public synchronized boolean isFlaky(final String test) {
+        return flaky.contains(test);
+    }
+
+    private boolean bypass(final String test) {
+        return !ENABLED || (BYPASS_FLAKY && flaky.contains(test));
+    }
+
+    /**
+     * @return The result of the test when run after the tests before it in the order (or at the end,
+     *         if it is not in the order), if at least minObservations runs agreed on it.
+     */
+    public synchronized Optional<Result> lookup(final List<String> order, final String test, final int minObservations) {
+        if (bypass(test)) {
+            return Optional.empty();
+        }
+
+        final int i = order.indexOf(test);
+        final Entry entry = entries.get(new Key(i < 0 ? order : order.subList(0, i), test));
+
+        if (entry != null && entry.consistent && entry.observations >= minObservations) {
+            hits++;
+            return Optional.of(entry.result);
+        }
+
+        misses++;
+        return Optional.empty();
+    }
+
+    /**
+     * Records the result of every test in the run, after the tests before it.
+     */
+    public synchronized void record(final List<String> order, final TestRunResult run) {
+        if (!ENABLED) {
+            return;
+        }
+
+        final Map<String, TestResult> results = run.results();
+        final PrefixHash hash = new PrefixHash();
+
+        for (final String test : order) {
+            final TestResult testResult = results.get(test);
+
+            if (testResult != null) {
+                final Key key = new Key(hash, test);
+                final Entry entry = entries.get(key);
+
+                if (entry == null) {
+                    entries.put(key, new Entry(testResult.result()));
+                } else {
+                    entry.observe(testResult.result());
+                }
+
+                // The tests after a timeout ran in a fresh JVM, not after the tests before them.
+                if (Watchdog.isTimeout(testResult)) {
+                    break;
+                }
+            }
+
+            hash.add(test);
+        }
+    }
+
+    /**
+     * Runs the order (with the watchdog's time limits) and records the results.
+     */
+    public TestRunResult run(final Runner runner, final List<String> order) {
+        final TestRunResult result = Watchdog.runList(runner, order).get();
+        record(order, result);
+        return result;
+    }
+
+    /**
+     * @return The result of the test in the order: from the cache if possible, otherwise by running the
+     *         order (with the test appended if it is not in the order). Empty if the test did not run.
+     */
+    public Optional<Result> result(final Runner runner, final List<String> order, final String test, final int minObservations) {
+        final Optional<Result> cached = lookup(order, test, minObservations);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        final List<String> actualOrder = new ArrayList<>(order);
+        if (!actualOrder.contains(test)) {
+            actualOrder.add(test);
+        }
+
+        return Optional.ofNullable(run(runner, actualOrder).results().get(test)).map(TestResult::result);
+    }
+
+    public synchronized String stats() {
+        return String.format("%d entries, %d hits, %d misses", entries.size(), hits, misses);
+    }
+
+    private void load() {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        final Gson gson = new Gson();
+        try (final BufferedReader reader = Files.newBufferedReader(path)) {
+            final Header header = gson.fromJson(reader.readLine(), Header.class);
+            if (header == null || !classpathHash.equals(header.classpath)) {
+                System.out.println("[INFO] Discarding result cache " + path + ", which was recorded with different classes.");
+                return;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final StoredEntry stored = gson.fromJson(line, StoredEntry.class);
+                if (stored != null) {
+                    entries.put(new Key(stored.hash1, stored.hash2, stored.test), stored.entry);
+                }
+            }
+        } catch (Exception e) {
+            // The cache only saves time, so start over with whatever could be read.
+            System.out.println("[WARNING] Could not read result cache " + path + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void save() {
+        if (path == null) {
+            return;
+        }
+
+        final Gson gson = new Gson();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+
+            final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (final BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                writer.write(gson.toJson(new Header(classpathHash)));
+                writer.newLine();
+
+                for (final Map.Entry<Key, Entry> entry : entries.entrySet()) {
+                    writer.write(gson.toJson(new StoredEntry(entry.getKey(), entry.getValue())));
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Two independent 64-bit polynomial hashes of a sequence of test names, so that distinct prefixes
+     * practically never collide, even over millions of entries.
+     */
+    private static class PrefixHash {
+        private static final long P1 = 1_000_003L;
+        private static final long P2 = 0x9E3779B97F4A7C15L;
+
+        private long hash1 = 0;
+        private long hash2 = 0;
+
+        private PrefixHash add(final String test) {
+            hash1 = hash1 * P1 + test.hashCode();
+            hash2 = hash2 * P2 + fnv(test);
+            return this;
+        }
+
+        private static long fnv(final String s) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                hash ^= s.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+    private static class Key {
+        private final long hash1;
+        private final long hash2;
+        private final String test;
+
+        private Key(final long hash1, final long hash2, final String test) {
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+            this.test = test;
+        }
+
+        private Key(final PrefixHash prefix, final String test) {
+            this(prefix.hash1, prefix.hash2, test);
+        }
+
+        private Key(final List<String> prefix, final String test) {
+            this(hash(prefix), test);
+        }
+
+        private static PrefixHash hash(final List<String> prefix) {
+            final PrefixHash hash = new PrefixHash();
+            prefix.forEach(hash::add);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            final Key key = (Key) o;
+            return hash1 == key.hash1 && hash2 == key.hash2 && test.equals(key.test);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash1, hash2, test);
+        }
+    }
+
+    private static class Entry {
+        private final Result result;
+        private int observations = 1;
+        private boolean consistent = true;
+
+        private Entry(final Result result) {
+            this.result = result;
+        }
+
+        private void observe(final Result result) {
+            observations++;
+            consistent &= this.result.equals(result);
+        }
+    }
+
+    private static class StoredEntry {
+        private final long hash1;
+        private final long hash2;
+        private final String test;
+        private final Entry entry;
+
+        private StoredEntry(final Key key, final Entry entry) {
+            this.hash1 = key.hash1;
+            this.hash2 = key.hash2;
+            this.test = key.test;
+            this.entry = entry;
+        }
+    }
+
+    private static class Header {
+        private final String classpath;
+
+        private Header(final String classpath) {
+            this.classpath = classpath;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.testrunner.data.results.TestRunResult;
+import com.reedoei.testrunner.runner.Runner;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the test runs of a module: how many JVMs were launched, how many test results came back, and
+ * how long the runs took (summed over all runs, so with several workers this exceeds the wall time).
+ * Also keeps the time each test took when it last ran, to estimate how long other runs will take.
+ */
+public class RunMetrics {
+    private static final Map<String, RunMetrics> METRICS = new ConcurrentHashMap<>();
+
+    /**
+     * @return The counts for all runners of the same module.
+     */
+    public static RunMetrics of(final Runner runner) {
+        return METRICS.computeIfAbsent(runner.project().getBasedir().toPath().toAbsolutePath().toString(),
+                k -> new RunMetrics());
+    }
+
+    private final AtomicLong jvmLaunches = new AtomicLong();
+    private final AtomicLong testsExecuted = new AtomicLong();
+    private final AtomicLong runMs = new AtomicLong();
+    // The latest time measured for each test, in seconds.
+    private final Map<String, Double> testTimes = new ConcurrentHashMap<>();
+
+    private RunMetrics() {
+    }
+
+    public void launched() {
+        jvmLaunches.incrementAndGet();
+    }
+
+    public void finished(final TestRunResult result, final long ms) {
+        testsExecuted.addAndGet(result.results().size());
+        runMs.addAndGet(ms);
+        result.results().values().forEach(r -> testTimes.put(r.name(), r.time()));
+    }
+
+    public void failed(final long ms) {
+        runMs.addAndGet(ms);
+    }
+
+    /**
+     * @return How long running the tests should take, in seconds, from the times measured so far. Tests
+     *         that never ran count as the average test (or as one second each, if no test ran yet).
+     */
+    public double estimateSeconds(final Collection<String> tests) {
+        final double average = testTimes.values().stream().mapToDouble(Double::doubleValue).average().orElse(1.0);
+
+        return tests.stream().mapToDouble(test -> testTimes.getOrDefault(test, average)).sum();
+    }
+
+    public long jvmLaunches() {
+        return jvmLaunches.get();
+    }
+
+    public long testsExecuted() {
+        return testsExecuted.get();
+    }
+
+    public long runMs() {
+        return runMs.get();
+    }
+}
@@ -0,0 +1,110 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.runner.Runner;
+import com.reedoei.testrunner.runner.SmartRunner;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A fixed set of runners that can be used to execute independent test orders concurrently.
+ * Each worker gets its own runner, so every order still runs in its own forked JVM.
+ *
+ * The copies of a {@link SmartRunner} each keep their own info store, since the stores are not safe to
+ * update from several threads. What they learn about flaky tests is merged into the module's
+ * {@link ResultCache} after every run (see {@link Watchdog}), which is where flakiness is looked up.
+ */
+public class RunnerPool {
+    public static final int WORKERS = Configuration.config().getProperty("dt.workers", 1);
+    // How many JVMs may run tests at once across all pools (e.g., of modules processed concurrently). 0 means no limit.
+    public static final int TOTAL_WORKERS = Configuration.config().getProperty("dt.workers.total", 0);
+
+    private static final Semaphore JVMS = new Semaphore(TOTAL_WORKERS > 0 ? TOTAL_WORKERS : Integer.MAX_VALUE, true);
+
+    /**
+     * Waits until another JVM may be started within dt.workers.total. Call {@link #releaseJvm()} once it exits.
+     */
+    public static void acquireJvm() {
+        JVMS.acquireUninterruptibly();
+    }
+
+    public static void releaseJvm() {
+        JVMS.release();
+    }
+
+    private final Runner runner;
+    private final int size;
+    private final BlockingQueue<Runner> runners;
+    private final ExecutorService executor;
+
+    public RunnerPool(final Runner runner) {
+        this(runner, WORKERS);
+    }
+
+    public RunnerPool(final Runner runner, final int size) {
+        this.runner = runner;
+        this.size = Math.max(1, size);
+        this.runners = new ArrayBlockingQueue<>(this.size);
+
+        runners.add(runner);
+        for (int i = 1; i < this.size; i++) {
+            runners.add(copy(runner));
+        }
+
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.size, r -> {
+            final Thread thread = new Thread(r, "dt-runner-pool-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Runner copy(final Runner runner) {
+        return SmartRunner.withFramework(runner.project(), runner.framework());
+    }
+
+    /**
+     * @return The runner this pool was created from. Use this for work that must happen sequentially.
+     */
+    public Runner runner() {
+        return runner;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Runs the task on the next free runner. The runner is only used by this task until it completes.
+     */
+    public <T> Future<T> submit(final Function<Runner, T> task) {
+        return executor.submit(() -> {
+            final Runner r = runners.take();
+
+            try {
+                return task.apply(r);
+            } finally {
+                runners.put(r);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stops taking new tasks, but lets the tasks already submitted (and not cancelled) finish without
+     * interrupting them, so that runs already started still complete and get cached.
+     */
+    public void shutdownGracefully() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,352 @@
+package edu.illinois.cs.dt.tools.runner;
+
+import com.reedoei.testrunner.configuration.Configuration;
+import com.reedoei.testrunner.data.results.Result;
+import com.reedoei.testrunner.data.results.TestResult;
+import com.reedoei.testrunner.data.results.TestRunResult;
+import com.reedoei.testrunner.runner.Runner;
+import com.reedoei.testrunner.runner.SmartRunner;
+import scala.Option;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs orders with a time limit, so that a hanging test cannot stall detection or minimization.
+ *
+ * When an order takes too long, the forked JVM running it is killed and the hanging test is located by
+ * bisecting on prefixes of the order (a prefix that does not reach the hanging test finishes in time).
+ * The hanging test gets a timeout result: an ERROR whose stack trace is a single marker frame (see
+ * {@link #isTimeout(TestResult)}). The tests after it are then run in a fresh JVM, so their results
+ * come from a different context than the full order would give them.
+ *
+ * To know which JVM to kill, each run waits until no other run is starting its JVM, starts its own, and
+ * takes the one new child process of this JVM that appears as its fork. If it cannot tell (e.g., other
+ * processes started at the same time, or the order ran without forking), nothing is killed. Killing
+ * the JVM also needs Java 9 or later (ProcessHandle). A run whose JVM is not killed is abandoned and
+ * left to finish on its own, and it keeps its place within dt.workers.total until it does.
+ */
+public class Watchdog {
+    // Per test in the order, so longer orders get more time. 0 disables the limit.
+    public static final int TEST_TIMEOUT_SECONDS = Configuration.config().getProperty("dt.timeout.test", 0);
+    // For a whole order, no matter how long. 0 disables the limit.
+    public static final int ORDER_TIMEOUT_SECONDS = Configuration.config().getProperty("dt.timeout.order", 0);
+    public static final Path TIMEOUTS_PATH = Paths.get("timeouts.txt");
+
+    // Time to start the JVM and set up the run, on top of the per-test time.
+    private static final int STARTUP_SECONDS = 30;
+    private static final StackTraceElement TIMEOUT_MARKER =
+            new StackTraceElement(Watchdog.class.getName(), "timeout", null, -1);
+
+    // Held while a run starts its JVM, so that the new child process can be told apart from other runs'.
+    private static final Object LAUNCH_LOCK = new Object();
+    private static final long LAUNCH_POLL_MS = 10;
+    private static final boolean CAN_LIST_CHILDREN = canListChildren();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        final Thread thread = new Thread(r, "dt-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static boolean enabled() {
+        return TEST_TIMEOUT_SECONDS > 0 || ORDER_TIMEOUT_SECONDS > 0;
+    }
+
+    public static boolean isTimeout(final TestResult result) {
+        final StackTraceElement[] stackTrace = result.stackTrace();
+
+        return result.result() == Result.ERROR && stackTrace != null && stackTrace.length == 1 &&
+                TIMEOUT_MARKER.equals(stackTrace[0]);
+    }
+
+    /**
+     * Same as {@link Runner#runList(List)}, but with the configured time limits.
+     */
+    public static Option<TestRunResult> runList(final Runner runner, final List<String> order) {
+        if (!enabled()) {
+            RunnerPool.acquireJvm();
+            try {
+                return run(runner, order, new AtomicBoolean(false));
+            } finally {
+                RunnerPool.releaseJvm();
+            }
+        }
+
+        final Optional<Option<TestRunResult>> result = attempt(runner, order);
+        if (result.isPresent()) {
+            return result.get();
+        }
+
+        return bisect(runner, order);
+    }
+
+    /**
+     * @param abandoned Set once the caller stopped waiting for the run, whose results then do not count.
+     */
+    private static Option<TestRunResult> run(final Runner runner, final List<String> order, final AtomicBoolean abandoned) {
+        final RunMetrics metrics = RunMetrics.of(runner);
+        final long start = System.currentTimeMillis();
+
+        final Optional<TestRunResult> inJvm = InJvmRunner.runList(runner, order);
+        if (inJvm.isPresent()) {
+            metrics.finished(inJvm.get(), System.currentTimeMillis() - start);
+            return Option.apply(inJvm.get());
+        }
+
+        metrics.launched();
+        final Option<TestRunResult> result = runner.runList(order);
+        if (abandoned.get()) {
+            return result;
+        }
+
+        if (runner instanceof SmartRunner) {
+            // Only this thread uses the runner's info store, see RunnerPool.
+            final SmartRunner smartRunner = (SmartRunner) runner;
+            ResultCache.of(runner).markFlaky(order.stream()
+                    .filter(test -> smartRunner.info().isFlaky(test))
+                    .collect(Collectors.toList()));
+        }
+
+        if (result.isEmpty()) {
+            metrics.failed(System.currentTimeMillis() - start);
+        } else {
+            metrics.finished(result.get(), System.currentTimeMillis() - start);
+        }
+
+        return result;
+    }
+
+    private static long budgetSeconds(final int tests) {
+        long budget = Long.MAX_VALUE;
+
+        if (TEST_TIMEOUT_SECONDS > 0) {
+            budget = STARTUP_SECONDS + (long) TEST_TIMEOUT_SECONDS * tests;
+        }
+
+        if (ORDER_TIMEOUT_SECONDS > 0) {
+            budget = Math.min(budget, ORDER_TIMEOUT_SECONDS);
+        }
+
+        return budget;
+    }
+
+    /**
+     * @return The result of the run, or empty if it did not finish in time.
+     */
+    private static Optional<Option<TestRunResult>> attempt(final Runner runner, final List<String> order) {
+        // Wait for a free JVM before starting the clock. The run itself gives it back once it finishes,
+        // even if it was abandoned.
+        RunnerPool.acquireJvm();
+
+        final AtomicBoolean abandoned = new AtomicBoolean(false);
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(budgetSeconds(order.size()));
+        final Future<Option<TestRunResult>> future;
+        final Optional<Object> fork;
+
+        synchronized (LAUNCH_LOCK) {
+            final Set<Object> before = children();
+
+            try {
+                future = EXECUTOR.submit(() -> {
+                    try {
+                        return run(runner, order, abandoned);
+                    } finally {
+                        RunnerPool.releaseJvm();
+                    }
+                });
+            } catch (RuntimeException e) {
+                RunnerPool.releaseJvm();
+                throw e;
+            }
+
+            fork = awaitFork(before, future, deadline);
+        }
+
+        try {
+            return Optional.of(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            abandoned.set(true);
+            future.cancel(true);
+
+            if (fork.isPresent()) {
+                kill(fork.get());
+            } else {
+                System.out.println("[WARNING] Cannot tell which JVM ran the hanging order, leaving it to finish on its own.");
+            }
+
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            abandoned.set(true);
+            future.cancel(true);
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Finds the first test that hangs, gives it a timeout result, and runs the rest of the order after it.
+     */
+    private static Option<TestRunResult> bisect(final Runner runner, final List<String> order) {
+        // The longest prefix known to finish in time, and the shortest one known not to.
+        int finishes = 0;
+        int hangs = order.size();
+        TestRunResult prefixResult = null;
+
+        while (hangs - finishes > 1) {
+            final int mid = (finishes + hangs) / 2;
+            final Optional<Option<TestRunResult>> result = attempt(runner, order.subList(0, mid));
+
+            if (result.isPresent()) {
+                if (result.get().isEmpty()) {
+                    return result.get();
+                }
+
+                finishes = mid;
+                prefixResult = result.get().get();
+            } else {
+                hangs = mid;
+            }
+        }
+
+        final String hung = order.get(finishes);
+        System.out.println("[WARNING] Test " + hung + " did not finish within " +
+                budgetSeconds(finishes + 1) + " seconds (after " + finishes + " other tests), recording it as a timeout.");
+        recordTimeout(runner, hung);
+
+        final Map<String, TestResult> results = new HashMap<>();
+        if (prefixResult != null) {
+            results.putAll(prefixResult.results());
+        }
+        results.put(hung, new TestResult(hung, Result.ERROR, budgetSeconds(finishes + 1),
+                new StackTraceElement[] {TIMEOUT_MARKER}));
+
+        final List<String> rest = order.subList(finishes + 1, order.size());
+        if (!rest.isEmpty()) {
+            final Option<TestRunResult> restResult = runList(runner, rest);
+
+            if (restResult.isEmpty()) {
+                return restResult;
+            }
+
+            results.putAll(restResult.get().results());
+        }
+
+        return Option.apply(new TestRunResult(UUID.randomUUID().toString(), order, results));
+    }
+
+    private static synchronized void recordTimeout(final Runner runner, final String test) {
+        try {
+            Files.write(OutputRoot.resolve(runner, TIMEOUTS_PATH), (test + System.lineSeparator()).getBytes(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean canListChildren() {
+        try {
+            Class.forName("java.lang.ProcessHandle");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return The child processes of this JVM (as ProcessHandles), or nothing if they cannot be listed.
+     *         Uses ProcessHandle through reflection, since this still needs to compile for Java 8.
+     */
+    private static Set<Object> children() {
+        try {
+            final Class<?> processHandle = Class.forName("java.lang.ProcessHandle");
+            final Method current = processHandle.getMethod("current");
+            final Method children = processHandle.getMethod("children");
+
+            return ((Stream<?>) children.invoke(current.invoke(null))).collect(Collectors.toSet());
+        } catch (ClassNotFoundException e) {
+            return new HashSet<>();
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+            return new HashSet<>();
+        }
+    }
+
+    /**
+     * Waits until the run started a new child process, finished, or ran out of time to start one.
+     *
+     * @return The only child process of this JVM that is not in before, if there is exactly one.
+     */
+    private static Optional<Object> awaitFork(final Set<Object> before, final Future<?> future, final long deadline) {
+        if (!CAN_LIST_CHILDREN) {
+            return Optional.empty();
+        }
+
+        final long end = Math.min(deadline, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(STARTUP_SECONDS));
+
+        while (!future.isDone() && System.currentTimeMillis() < end) {
+            final Set<Object> started = children();
+            started.removeAll(before);
+
+            if (started.size() == 1) {
+                return Optional.of(started.iterator().next());
+            } else if (started.size() > 1) {
+                return Optional.empty();
+            }
+
+            try {
+                Thread.sleep(LAUNCH_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Kills the process (along with its children).
+     */
+    private static void kill(final Object fork) {
+        try {
+            final Class<?> processHandle = Class.forName("java.lang.ProcessHandle");
+            final Method descendants = processHandle.getMethod("descendants");
+            final Method destroyForcibly = processHandle.getMethod("destroyForcibly");
+
+            for (final Object descendant : ((Stream<?>) descendants.invoke(fork)).collect(Collectors.toList())) {
+                destroyForcibly.invoke(descendant);
+            }
+            destroyForcibly.invoke(fork);
+        } catch (ClassNotFoundException e) {
+            System.out.println("[WARNING] Cannot kill the hanging JVM before Java 9, leaving it to finish on its own.");
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.illinois.cs.dt.tools.runner.data;
+
+import com.google.common.base.Preconditions;
+import com.reedoei.testrunner.data.results.Result;
+import com.reedoei.testrunner.data.results.TestResult;
+import com.reedoei.testrunner.data.results.TestRunResult;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * The results of a test run, stored as one byte per test instead of a map of result objects.
+ *
+ * Tests are identified by their position in a dictionary order (usually the original order) that is
+ * shared by all results being compared, so comparing two runs is a scan over two byte arrays. Stack
+ * traces are only kept if asked for, since they are by far the largest part of a result.
+ */
+public class CompactRunResult {
+    private static final Result[] RESULTS = Result.values();
+    // Code for tests in the dictionary that did not run.
+    private static final byte NOT_RUN = 0;
+
+    public static CompactRunResult from(final TestOrder dictionary, final TestRunResult run) {
+        return from(dictionary, run, false);
+    }
+
+    /**
+     * @param dictionary The tests to keep results for. Results of any other tests are dropped.
+     */
+    public static CompactRunResult from(final TestOrder dictionary, final TestRunResult run, final boolean keepStackTraces) {
+        final byte[] codes = new byte[dictionary.size()];
+        final Map<Integer, StackTraceElement[]> stackTraces = new HashMap<>();
+
+        for (final TestResult result : run.results().values()) {
+            final int id = dictionary.indexOf(result.name());
+
+            if (id >= 0) {
+                codes[id] = (byte) (result.result().ordinal() + 1);
+
+                if (keepStackTraces && result.stackTrace() != null) {
+                    stackTraces.put(id, result.stackTrace());
+                }
+            }
+        }
+
+        return new CompactRunResult(dictionary, codes, stackTraces);
+    }
+
+    private final TestOrder dictionary;
+    private final byte[] codes;
+    private final Map<Integer, StackTraceElement[]> stackTraces;
+
+    private CompactRunResult(final TestOrder dictionary, final byte[] codes,
+                             final Map<Integer, StackTraceElement[]> stackTraces) {
+        this.dictionary = dictionary;
+        this.codes = codes;
+        this.stackTraces = stackTraces;
+    }
+
+    public TestOrder dictionary() {
+        return dictionary;
+    }
+
+    public String name(final int id) {
+        return dictionary.tests().get(id);
+    }
+
+    public boolean ran(final int id) {
+        return codes[id] != NOT_RUN;
+    }
+
+    /**
+     * @return The result of the test, or null if it did not run.
+     */
+    public Result result(final int id) {
+        return ran(id) ? RESULTS[codes[id] - 1] : null;
+    }
+
+    public Result result(final String name) {
+        final int id = dictionary.indexOf(name);
+
+        return id >= 0 ? result(id) : null;
+    }
+
+    public Optional<StackTraceElement[]> stackTrace(final int id) {
+        return Optional.ofNullable(stackTraces.get(id));
+    }
+
+    /**
+     * @return The ids of the tests that ran in both runs but had different results.
+     */
+    public IntStream differences(final CompactRunResult other) {
+        Preconditions.checkArgument(codes.length == other.codes.length,
+                "Cannot compare results using different dictionaries");
+
+        return IntStream.range(0, codes.length)
+                .filter(id -> ran(id) && other.ran(id) && codes[id] != other.codes[id]);
+    }
+}
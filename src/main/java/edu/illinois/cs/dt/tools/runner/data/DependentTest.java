@@ -6,11 +6,13 @@ import com.reedoei.testrunner.runner.Runner;
 import edu.illinois.cs.dt.tools.minimizer.TestMinimizer;
 import edu.illinois.cs.dt.tools.minimizer.TestMinimizerBuilder;
 
-import java.util.function.Supplier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
 public class DependentTest {
-    private static final boolean VERIFY_DTS = Configuration.config().getProperty("dt.verify", true);
+    public static final boolean VERIFY_DTS = Configuration.config().getProperty("dt.verify", true);
 
     private final String name;
 
@@ -40,26 +42,35 @@ public class DependentTest {
         return new Gson().toJson(this);
     }
 
-    public Stream<TestMinimizer> minimizers(final TestMinimizerBuilder builder, final Runner runner) {
-        final TestMinimizerBuilder minimizerBuilder = builder.dependentTest(name);
-
-        final Supplier<Stream<TestMinimizer>> intendedMinimizer = () -> minimizer(minimizerBuilder, intended, runner);
-        final Supplier<Stream<TestMinimizer>> revealedMinimizer = () -> minimizer(minimizerBuilder, revealed, runner);
-
+    /**
+     * @return The runs whose dependencies should be found: the shorter one if both runs have the same
+     *         result, otherwise both.
+     */
+    public List<TestRun> runsToMinimize() {
         if (intended.result().equals(revealed.result())) {
             if (intended.order().size() < revealed.order().size()) {
-                return intendedMinimizer.get();
+                return Collections.singletonList(intended);
             } else {
-                return revealedMinimizer.get();
+                return Collections.singletonList(revealed);
             }
         } else {
-            return Stream.concat(intendedMinimizer.get(), revealedMinimizer.get());
+            return Arrays.asList(intended, revealed);
         }
     }
 
-    private Stream<TestMinimizer> minimizer(final TestMinimizerBuilder builder, final TestRun run, final Runner runner) {
+    public Stream<TestMinimizer> minimizers(final TestMinimizerBuilder builder, final Runner runner) {
+        final TestMinimizerBuilder minimizerBuilder = builder.dependentTest(name);
+
+        return runsToMinimize().stream().flatMap(run -> minimizer(minimizerBuilder, run, runner));
+    }
+
+    /**
+     * @return The minimizer for one of the runs of this test, or nothing if the run does not give the
+     *         same result again (when dt.verify is on).
+     */
+    public Stream<TestMinimizer> minimizer(final TestMinimizerBuilder builder, final TestRun run, final Runner runner) {
         try {
-            final TestMinimizer minimizer = builder.testOrder(run.order()).build();
+            final TestMinimizer minimizer = builder.dependentTest(name).testOrder(run.order()).build();
 
             if (VERIFY_DTS) {
                 if (!run.verify(name, runner,minimizer)) {
@@ -2,10 +2,13 @@ package edu.illinois.cs.dt.tools.runner.data;
 
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
 import com.reedoei.eunomia.collections.ListUtil;
 import com.reedoei.eunomia.io.files.FileUtil;
 import com.reedoei.testrunner.data.results.Result;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
@@ -20,11 +23,79 @@ public class DependentTestList {
         if (path.getFileName().toString().endsWith(".json")) {
             System.out.println("[INFO] Reading dependent test list from " + path);
             return new Gson().fromJson(FileUtil.readFile(path), DependentTestList.class);
+        } else if (path.getFileName().toString().endsWith(".jsonl")) {
+            System.out.println("[INFO] Reading dependent test stream from " + path);
+            return new DependentTestList(fromJsonLines(path));
         } else {
             return fromLines(Files.readAllLines(path, Charset.defaultCharset()));
         }
     }
 
+    /**
+     * Reads a file written by {@link DependentTestWriter}. If the process writing it died in the middle
+     * of writing a record, the partial record at the end is ignored. Any other damaged line is skipped,
+     * and the records after it are still read.
+     */
+    public static List<DependentTest> fromJsonLines(final Path path) throws IOException {
+        final Gson gson = new Gson();
+        final List<DependentTest> dts = new ArrayList<>();
+
+        try (final BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    dts.add(gson.fromJson(line, DependentTest.class));
+                } catch (JsonParseException e) {
+                    System.out.println("[WARNING] Ignoring damaged dependent test record in " + path + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return dts;
+    }
+
+    /**
+     * Converts a file written by {@link DependentTestWriter} to the regular json format, one record at a
+     * time, so that the whole list never needs to be in memory. Damaged lines are skipped, as in
+     * {@link #fromJsonLines(Path)}.
+     */
+    public static void convertJsonLines(final Path jsonLines, final Path output) throws IOException {
+        final Gson gson = new Gson();
+
+        try (final BufferedReader reader = Files.newBufferedReader(jsonLines);
+             final JsonWriter writer = new JsonWriter(Files.newBufferedWriter(output))) {
+            writer.beginObject();
+            writer.name("dts");
+            writer.beginArray();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                final DependentTest dt;
+                try {
+                    dt = gson.fromJson(line, DependentTest.class);
+                } catch (JsonParseException e) {
+                    System.out.println("[WARNING] Ignoring damaged dependent test record in " + jsonLines + ": " + e.getMessage());
+                    continue;
+                }
+
+                if (dt != null) {
+                    gson.toJson(dt, DependentTest.class, writer);
+                }
+            }
+
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
     public static DependentTestList fromLines(final List<String> lines) {
         final List<DependentTest> dts = new ArrayList<>();
 
@@ -0,0 +1,110 @@
+package edu.illinois.cs.dt.tools.runner.data;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends dependent tests to a file as they are found, one JSON record per line, along with their
+ * names to a plain list. Both files are flushed after every test, so nothing found so far is lost if
+ * the process dies, and nothing needs to be kept in memory.
+ */
+public class DependentTestWriter implements Closeable {
+    private final Gson gson = new Gson();
+    private final BufferedWriter dtWriter;
+    private final BufferedWriter listWriter;
+
+    private int count = 0;
+
+    /**
+     * Appends to the files if they exist (e.g., when resuming an interrupted session). If the process that
+     * wrote them died in the middle of a line, the partial line is dropped first, so that the next record
+     * starts on a line of its own.
+     */
+    public DependentTestWriter(final Path dtPath, final Path listPath) throws IOException {
+        dropPartialLine(dtPath);
+        dropPartialLine(listPath);
+
+        this.dtWriter = Files.newBufferedWriter(dtPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.listWriter = Files.newBufferedWriter(listPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Truncates the file after its last newline.
+     */
+    private static void dropPartialLine(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = channel.size();
+
+            while (end > 0) {
+                final long start = Math.max(0, end - buffer.capacity());
+                buffer.clear();
+                buffer.limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+
+                int i = buffer.limit() - 1;
+                while (i >= 0 && buffer.get(i) != '\n') {
+                    i--;
+                }
+
+                if (i >= 0) {
+                    end = start + i + 1;
+                    break;
+                }
+
+                end = start;
+            }
+
+            if (end < channel.size()) {
+                System.out.println("[WARNING] Dropping an incomplete line at the end of " + path);
+                channel.truncate(end);
+            }
+        }
+    }
+
+    public void write(final DependentTest dt) {
+        try {
+            dtWriter.write(gson.toJson(dt));
+            dtWriter.newLine();
+            dtWriter.flush();
+
+            listWriter.write(dt.name());
+            listWriter.newLine();
+            listWriter.flush();
+
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            dtWriter.close();
+        } finally {
+            listWriter.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package edu.illinois.cs.dt.tools.runner.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An order of tests that is shared by everything that refers to some prefix of it, such as all of the
+ * test runs made from a single round of detection. Prefixes are views of the same list, so they cost
+ * the same no matter how long they are.
+ */
+public class TestOrder {
+    private final List<String> tests;
+    // Rebuilt when needed, so it is not saved along with the order.
+    private transient Map<String, Integer> indices = null;
+
+    public TestOrder(final List<String> tests) {
+        this.tests = Collections.unmodifiableList(new ArrayList<>(tests));
+    }
+
+    public List<String> tests() {
+        return tests;
+    }
+
+    public int size() {
+        return tests.size();
+    }
+
+    private synchronized Map<String, Integer> indices() {
+        if (indices == null) {
+            indices = new HashMap<>(tests.size() * 2);
+
+            for (int i = 0; i < tests.size(); i++) {
+                // Keep the first position, like List.indexOf.
+                indices.putIfAbsent(tests.get(i), i);
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * @return The position of the test in this order, or -1 if it does not run in this order.
+     */
+    public int indexOf(final String test) {
+        return indices().getOrDefault(test, -1);
+    }
+
+    /**
+     * @return The first length tests of this order.
+     */
+    public List<String> prefix(final int length) {
+        return tests.subList(0, length);
+    }
+
+    /**
+     * @return How many tests run before the given test, or 0 if it does not run in this order.
+     */
+    public int lengthBefore(final String test) {
+        return Math.max(0, indexOf(test));
+    }
+}
@@ -4,13 +4,14 @@ import com.reedoei.testrunner.configuration.Configuration;
 import com.reedoei.testrunner.data.results.Result;
 import com.reedoei.testrunner.runner.Runner;
 import edu.illinois.cs.dt.tools.minimizer.TestMinimizer;
+import edu.illinois.cs.dt.tools.runner.ResultCache;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.IntStream;
 
 public class TestRun {
-    private static final int VERIFY_ROUNDS = Configuration.config().getProperty("dt.verify.rounds", 1);
+    public static final int VERIFY_ROUNDS = Configuration.config().getProperty("dt.verify.rounds", 1);
 
     private final List<String> order;
     private final Result result;
@@ -20,6 +21,14 @@ public class TestRun {
         this.result = result;
     }
 
+    /**
+     * A run of the tests before the given position in a shared order. The run refers to the order
+     * instead of copying it, so any number of runs from the same order share a single list.
+     */
+    public TestRun(final TestOrder order, final int length, final Result result) {
+        this(order.prefix(length), result);
+    }
+
     public List<String> order() {
         return order;
     }
@@ -34,18 +43,28 @@ public class TestRun {
 
     public boolean verify(final String dt, final Runner runner, final TestMinimizer minimizer) {
         return IntStream.range(0, VERIFY_ROUNDS)
-                .allMatch(i -> verifyRound(dt, runner, minimizer));
+                .allMatch(i -> verifyRound(dt, runner, minimizer, i));
+    }
+
+    /**
+     * @return The order to run to check the result of the dependent test: this run's order, followed by
+     *         the dependent test itself.
+     */
+    public List<String> verifyOrder(final String dt) {
+        final List<String> order = new ArrayList<>(this.order);
+        if (!order.contains(dt)) {
+            order.add(dt);
+        }
+        return order;
     }
 
-    private boolean verifyRound(final String dt, final Runner runner, final TestMinimizer minimizer) {
+    private boolean verifyRound(final String dt, final Runner runner, final TestMinimizer minimizer, final int round) {
         System.out.printf("[DEBUG] Verifying %s, status: expected %s", dt, this.result);
         Result result = null;
         try {
-            final List<String> order = new ArrayList<>(this.order);
-            if (!order.contains(dt)) {
-                order.add(dt);
-            }
-            result = runner.runList(order).get().results().get(dt).result();
+            // The run that found this result counts as the first observation, so each verification
+            // round needs one more (agreeing) observation than the one before.
+            result = ResultCache.of(runner).result(runner, verifyOrder(dt), dt, round + 2).orElse(null);
         } catch (Exception ignored) {}
 
         if (minimizer != null) {